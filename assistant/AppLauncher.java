@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Starts the applications CommandProcessor opens, without blocking the
+ * input loop.
+ *
+ * At most maxConcurrent children are alive at once, counting launches
+ * still being spawned; further requests are rejected immediately instead
+ * of piling up processes. A slot is freed when its child exits. The
+ * timeout only covers the spawn: an application opened without
+ * "cmd /c start" is the child itself, may stay open as long as the user
+ * likes and holds its slot meanwhile. Each child's output is drained on a
+ * background thread and its exit is reaped through onExit().
+ */
+class AppLauncher {
+    private static final int OUTPUT_TAIL_CHARS = 512;
+
+    /** Outcome of one launch. */
+    static final class LaunchResult {
+        enum Status { EXITED, FAILED, REJECTED, TIMED_OUT }
+
+        final String command;
+        final Status status;
+        final int exitCode;
+        final long startNanos;
+        final long runNanos;
+        final String detail;
+
+        LaunchResult(String command, Status status, int exitCode, long startNanos, long runNanos, String detail) {
+            this.command = command;
+            this.status = status;
+            this.exitCode = exitCode;
+            this.startNanos = startNanos;
+            this.runNanos = runNanos;
+            this.detail = detail;
+        }
+
+        boolean succeeded() {
+            return status == Status.EXITED && exitCode == 0;
+        }
+    }
+
+    private final int maxConcurrent;
+    private final long timeoutMillis;
+    private final Semaphore permits;
+    private final Set<Process> running = ConcurrentHashMap.newKeySet();
+    private final ExecutorService workers = Executors.newCachedThreadPool(daemonThreads("app-launcher"));
+    private final ScheduledExecutorService timeouts =
+        Executors.newSingleThreadScheduledExecutor(daemonThreads("app-launcher-timeout"));
+    private final AtomicLong launched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong totalStartNanos = new AtomicLong();
+
+    AppLauncher(int maxConcurrent, long timeoutMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.timeoutMillis = timeoutMillis;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    /** Launcher configured from -Dassistant.launcher.maxConcurrent and .timeoutSeconds. */
+    static AppLauncher fromSystemProperties() {
+        return new AppLauncher(Integer.getInteger("assistant.launcher.maxConcurrent", 4),
+            TimeUnit.SECONDS.toMillis(Long.getLong("assistant.launcher.timeoutSeconds", 30)));
+    }
+
+    /**
+     * Starts command in the background. The future completes when the child
+     * has exited, failed to start, did not start within the timeout, or was
+     * rejected for lack of a free launch slot.
+     */
+    CompletableFuture<LaunchResult> launch(String command) {
+        if (!permits.tryAcquire()) {
+            rejected.incrementAndGet();
+            return CompletableFuture.completedFuture(new LaunchResult(command, LaunchResult.Status.REJECTED,
+                -1, 0, 0, maxConcurrent + " launches already running"));
+        }
+
+        CompletableFuture<LaunchResult> outcome = new CompletableFuture<>();
+        try {
+            workers.execute(() -> start(command, outcome));
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            outcome.complete(new LaunchResult(command, LaunchResult.Status.REJECTED, -1, 0, 0, "launcher is shut down"));
+        }
+        return outcome;
+    }
+
+    private void start(String command, CompletableFuture<LaunchResult> outcome) {
+        long requested = System.nanoTime();
+        // The spawn itself cannot be interrupted; a late child is left alone, only reported
+        ScheduledFuture<?> timeout = timeouts.schedule(() -> {
+            if (outcome.complete(new LaunchResult(command, LaunchResult.Status.TIMED_OUT, -1,
+                    System.nanoTime() - requested, 0, "did not start within " + timeoutMillis + " ms"))) {
+                timedOut.incrementAndGet();
+            }
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        Process process;
+        try {
+            // Same tokenizing as Runtime.exec(String)
+            ProcessBuilder builder = new ProcessBuilder(tokenize(command));
+            builder.redirectErrorStream(true);
+            builder.redirectInput(ProcessBuilder.Redirect.PIPE);
+            process = builder.start();
+            process.getOutputStream().close();
+        } catch (IOException e) {
+            timeout.cancel(false);
+            permits.release();
+            failed.incrementAndGet();
+            outcome.complete(new LaunchResult(command, LaunchResult.Status.FAILED, -1,
+                System.nanoTime() - requested, 0, e.getMessage()));
+            return;
+        }
+
+        timeout.cancel(false);
+        long started = System.nanoTime();
+        long startNanos = started - requested;
+        launched.incrementAndGet();
+        totalStartNanos.addAndGet(startNanos);
+        PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.LAUNCH, startNanos);
+        running.add(process);
+
+        StringBuilder tail = new StringBuilder();
+        Thread drainer = new Thread(() -> drain(process.getInputStream(), tail), "app-launcher-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+
+        process.onExit().thenAccept(exited -> {
+            running.remove(exited);
+            permits.release();
+            long runNanos = System.nanoTime() - started;
+            int exitCode = exited.exitValue();
+            if (exitCode != 0) {
+                failed.incrementAndGet();
+            }
+            String output;
+            synchronized (tail) {
+                output = tail.toString().trim();
+            }
+            // No-op if the spawn already timed out
+            outcome.complete(new LaunchResult(command, LaunchResult.Status.EXITED,
+                exitCode, startNanos, runNanos, output));
+        });
+    }
+
+    // Keeps only the last few hundred characters of output for error reports
+    private static void drain(InputStream output, StringBuilder tail) {
+        byte[] buffer = new byte[4096];
+        try (InputStream in = output) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                synchronized (tail) {
+                    tail.append(new String(buffer, 0, n, StandardCharsets.UTF_8));
+                    if (tail.length() > OUTPUT_TAIL_CHARS) {
+                        tail.delete(0, tail.length() - OUTPUT_TAIL_CHARS);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // Child closed its output
+        }
+    }
+
+    static List<String> tokenize(String command) {
+        List<String> tokens = new ArrayList<>();
+        StringTokenizer tokenizer = new StringTokenizer(command);
+        while (tokenizer.hasMoreTokens()) {
+            tokens.add(tokenizer.nextToken());
+        }
+        return tokens;
+    }
+
+    int runningCount() {
+        return running.size();
+    }
+
+    String stats() {
+        long count = launched.get();
+        return String.format("%d launched (avg start %.1f ms), %d failed, %d timed out, %d rejected, %d running",
+            count, count == 0 ? 0 : totalStartNanos.get() / 1e6 / count,
+            failed.get(), timedOut.get(), rejected.get(), runningCount());
+    }
+
+    /** Stops accepting launches and destroys children that are still running. */
+    void shutdown() {
+        workers.shutdownNow();
+        timeouts.shutdownNow();
+        for (Process process : running) {
+            process.destroy();
+        }
+    }
+
+    static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
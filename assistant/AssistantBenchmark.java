@@ -0,0 +1,612 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.VoiceManager;
+import com.sun.speech.freetts.en.us.CMULexicon;
+import com.sun.speech.freetts.lexicon.Lexicon;
+import com.sun.speech.freetts.lexicon.LexiconImpl;
+
+/**
+ * Small self-contained benchmark harness for the assistant core.
+ *
+ * Steady-state benchmarks are warmed up, then run in timed rounds; the
+ * report shows the mean time per operation and throughput. Cold benchmarks
+ * (startup phases, first synthesis on a fresh voice) time single runs of
+ * something that only happens once per process. Pool benchmarks report
+ * phrases per second rendered by a VoicePool of 1, 2, 4... voices.
+ *
+ * jmh/ runs the same operations under JMH, the cold ones as one shot per
+ * forked JVM. The pool benchmarks are only here: they pick the pool sizes
+ * and thread counts from the core count at run time, which JMH's fixed
+ * thread count per benchmark cannot follow.
+ *
+ * Usage: {@code java AssistantBenchmark [filter] [--json out.json] [--baseline old.json]}.
+ * With --baseline, each result is compared to the same benchmark in an
+ * earlier --json file and changes beyond REGRESSION_PERCENT are flagged.
+ */
+class AssistantBenchmark {
+    private static final long WARMUP_MILLIS = 1000;
+    private static final long MEASURE_MILLIS = 2000;
+    private static final int ROUNDS = 5;
+    private static final int COLD_RUNS = 5;
+    private static final double REGRESSION_PERCENT = 10;
+
+    /** One benchmarked operation; i is the invocation count, for picking inputs. */
+    interface Op {
+        Object run(int i) throws Exception;
+    }
+
+    /** Timing of one benchmark, in nanoseconds per operation. */
+    static final class Result {
+        final String name;
+        final String mode;
+        final double[] rounds;
+        final double mean;
+        final double best;
+
+        Result(String name, String mode, double[] rounds) {
+            this.name = name;
+            this.mode = mode;
+            this.rounds = rounds;
+            this.mean = Arrays.stream(rounds).average().orElse(0);
+            this.best = Arrays.stream(rounds).min().orElse(0);
+        }
+    }
+
+    // Results are folded in here so the JIT cannot discard the work
+    static volatile int sink;
+
+    // Everything that allocates a voice, so a filter that selects none of them skips the voice check
+    private static final String[] VOICE_BENCHMARKS = {
+        "startup.voice-allocation", "startup.voice-allocation-mapped", "tts.synth-dynamic",
+        "tts.synth-dynamic-cached", "tts.synth-cold-short", "tts.synth-cold-long",
+        "tts.synth-warm-short", "tts.synth-warm-long", "tts.pool-1",
+    };
+
+    // The cache behind tts.synth-dynamic-cached, whose hit rate main() reports
+    private static PronunciationCache dynamicPronunciations;
+
+    private static final String[] MATH_CORPUS = {
+        "5 plus 3", "10 minus 4", "12 times 7", "3.5 plus 2.25", "100 minus 99.5", "6 times 0.5",
+    };
+
+    // What people actually say, including near misses and commands that match nothing
+    static final String[] COMMAND_CORPUS = {
+        "what time is it", "open calculator", "open notepad please", "what's the date today",
+        "what day is it", "tell me a joke", "flip a coin", "roll a dice", "open youtube",
+        "search for java programming", "calculate 5 plus 3", "what is 12 times 7",
+        "open google", "open chrome", "open file explorer", "open task manager", "help",
+        "open control panel", "test voice", "system info", "can you open gmail for me",
+        "turn on the lights", "play some music", "what is the weather like", "open settings",
+    };
+
+    // Typical recognizer slips; none of these match a trigger exactly
+    static final String[] MISSPELLED_CORPUS = {
+        "open calclator", "wat time is it", "flip a coyn", "open crome", "open gmial", "serch for java",
+        "roll a dise", "test voise", "tell me a jok", "open yotube", "open goggle", "what dte is it",
+        "system inf", "open task manger", "open contrl panel", "open exel", "turn on the lights",
+    };
+
+    private static final String[] POOL_PHRASES = {
+        "Opening Calculator", "The current time is 9:41 AM", "Heads! The coin landed on heads.",
+        "Voice test successful! FreeTTS is working correctly. You can hear my voice clearly.",
+        "Sorry, I didn't understand that command. Type or say 'help' to see what I can do.",
+    };
+
+    private static final String SHORT_PHRASE = "Opening Calculator";
+    private static final String LONG_PHRASE = "Here are some things I can do. I can open applications, websites, "
+        + "tell you time and date, search the web, and much more! Check the console for a detailed list.";
+
+    public static void main(String[] args) throws Exception {
+        String filter = "";
+        String jsonFile = null;
+        String baselineFile = null;
+        for (int a = 0; a < args.length; a++) {
+            if (args[a].equals("--json") && a + 1 < args.length) {
+                jsonFile = args[++a];
+            } else if (args[a].equals("--baseline") && a + 1 < args.length) {
+                baselineFile = args[++a];
+            } else {
+                filter = args[a];
+            }
+        }
+
+        Map<String, Op> benchmarks = coreBenchmarks(filter);
+        benchmarks.putAll(voiceBenchmarks(filter));
+        Map<String, Op> coldBenchmarks = coldBenchmarks(filter);
+        boolean haveVoice = selected(filter, VOICE_BENCHMARKS) && voiceAvailable();
+        if (!haveVoice && selected(filter, VOICE_BENCHMARKS)) {
+            System.out.println("⚠️  No FreeTTS voice on the classpath; skipping tts.* and startup.voice-allocation");
+        }
+        if (selected(filter, "startup.lexicon-freetts", "startup.lexicon-mapped",
+                "lexicon.lookup-freetts", "lexicon.lookup-mapped", "lexicon.lookup-cached")) {
+            Path mapped = lexiconFile();
+            System.out.printf(Locale.ROOT, "📖 Lexicon heap: FreeTTS %d KB, mapped %d KB%n",
+                retainedBytes(i -> freeTTSLexicon()) / 1024,
+                retainedBytes(i -> new MappedLexicon(mapped)) / 1024);
+        }
+
+        // Phrases per second against pool size, doubling up to twice the core count
+        List<Integer> poolSizes = new ArrayList<>();
+        if (haveVoice) {
+            for (int size = 1; size <= 2 * Runtime.getRuntime().availableProcessors(); size *= 2) {
+                poolSizes.add(size);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (Map.Entry<String, Op> benchmark : coldBenchmarks.entrySet()) {
+            if (benchmark.getKey().contains(filter)) {
+                results.add(report(measureCold(benchmark.getKey(), benchmark.getValue())));
+            }
+        }
+        for (Map.Entry<String, Op> benchmark : benchmarks.entrySet()) {
+            if (benchmark.getKey().contains(filter)) {
+                results.add(report(measure(benchmark.getKey(), benchmark.getValue())));
+            }
+        }
+
+        if (dynamicPronunciations != null && dynamicPronunciations.hits() + dynamicPronunciations.misses() > 0) {
+            System.out.println("📖 Pronunciation cache: " + dynamicPronunciations.stats());
+        }
+
+        for (int size : poolSizes) {
+            String name = "tts.pool-" + size;
+            if (name.contains(filter)) {
+                results.add(report(measurePool(name, size)));
+            }
+        }
+
+        if (jsonFile != null) {
+            writeJson(Paths.get(jsonFile), results);
+            System.out.println("💾 Results written to " + jsonFile);
+        }
+        if (baselineFile != null) {
+            compare(readBaseline(Paths.get(baselineFile)), results);
+        }
+    }
+
+    /** Steady-state benchmarks that need no voice: spoken math and command dispatch. */
+    static Map<String, Op> coreBenchmarks(String filter) {
+        Map<String, Op> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("math.legacy-split", i -> legacyMath(MATH_CORPUS[i % MATH_CORPUS.length]));
+        benchmarks.put("math.parse-uncached", i -> {
+            SpokenMath.Expression e = SpokenMath.parseUncached(MATH_CORPUS[i % MATH_CORPUS.length]);
+            return e.spoken + " equals " + SpokenMath.format(e.evaluate());
+        });
+        benchmarks.put("math.parse-cached", i -> {
+            SpokenMath.Expression e = SpokenMath.parse(MATH_CORPUS[i % MATH_CORPUS.length]);
+            return e.spoken + " equals " + SpokenMath.format(e.evaluate());
+        });
+
+        benchmarks.put("dispatch.match", i -> CommandProcessor.intents().match(COMMAND_CORPUS[i % COMMAND_CORPUS.length]));
+        CommandProcessor headless = CommandProcessor.headless();
+        benchmarks.put("dispatch.process-command", i -> headless.processCommand(COMMAND_CORPUS[i % COMMAND_CORPUS.length]));
+
+        benchmarks.put("dispatch.fuzzy-misspelled", i -> {
+            String command = MISSPELLED_CORPUS[i % MISSPELLED_CORPUS.length];
+            IntentMatcher.Match<CommandProcessor.CommandHandler> match = CommandProcessor.intents().match(command);
+            return match != null ? match : CommandProcessor.intents().matchFuzzy(command);
+        });
+        if ("dispatch.fuzzy-5000-phrases".contains(filter)) {
+            IntentMatcher<String> large = syntheticIntents(5000);
+            benchmarks.put("dispatch.fuzzy-5000-phrases", i -> large.matchFuzzy(MISSPELLED_CORPUS[i % MISSPELLED_CORPUS.length]));
+        }
+        return benchmarks;
+    }
+
+    /**
+     * Steady-state benchmarks on the FreeTTS lexicon and, when a voice is on
+     * the classpath, on synthesis into memory.
+     */
+    static Map<String, Op> voiceBenchmarks(String filter) throws IOException {
+        Map<String, Op> benchmarks = new LinkedHashMap<>();
+        if (selected(filter, "lexicon.lookup-freetts", "lexicon.lookup-mapped", "lexicon.lookup-cached")) {
+            Lexicon freeTTS = freeTTSLexicon();
+            Lexicon shared = new MappedLexicon(lexiconFile());
+            String[] words = lexiconWords();
+            benchmarks.put("lexicon.lookup-freetts", i -> freeTTS.getPhones(words[i % words.length], null));
+            benchmarks.put("lexicon.lookup-mapped", i -> shared.getPhones(words[i % words.length], null));
+            Lexicon cached = new PronunciationCache(freeTTS, PronunciationCache.DEFAULT_SIZE);
+            benchmarks.put("lexicon.lookup-cached", i -> cached.getPhones(words[i % words.length], null));
+        }
+        if (!selected(filter, "tts.synth-warm-short", "tts.synth-warm-long", "tts.synth-dynamic",
+                "tts.synth-dynamic-cached") || !voiceAvailable()) {
+            return benchmarks;
+        }
+        Voice warm = newVoice();
+        BufferingAudioPlayer player = (BufferingAudioPlayer) warm.getAudioPlayer();
+        benchmarks.put("tts.synth-warm-short", i -> synthesize(warm, player, SHORT_PHRASE));
+        benchmarks.put("tts.synth-warm-long", i -> synthesize(warm, player, LONG_PHRASE));
+
+        // Time and date replies: new text each time, so only the pronunciations can be reused
+        String[] dynamic = dynamicPhrases();
+        benchmarks.put("tts.synth-dynamic", i -> synthesize(warm, player, dynamic[i % dynamic.length]));
+        Voice cachedVoice = newVoice();
+        dynamicPronunciations = new PronunciationCache(cachedVoice.getLexicon(), PronunciationCache.DEFAULT_SIZE);
+        dynamicPronunciations.warm(CommandProcessor.staticResponses());
+        cachedVoice.setLexicon(dynamicPronunciations);
+        BufferingAudioPlayer cachedPlayer = (BufferingAudioPlayer) cachedVoice.getAudioPlayer();
+        benchmarks.put("tts.synth-dynamic-cached",
+            i -> synthesize(cachedVoice, cachedPlayer, dynamic[i % dynamic.length]));
+        return benchmarks;
+    }
+
+    /**
+     * Things that happen once per process: loading the command table and
+     * lexicon, allocating a voice and its first synthesis. Each run starts
+     * from scratch, so these are timed per invocation with no warmup.
+     */
+    static Map<String, Op> coldBenchmarks(String filter) throws IOException {
+        Map<String, Op> benchmarks = new LinkedHashMap<>();
+        benchmarks.put("startup.command-index", i -> CommandProcessor.COMMANDS.loadTable());
+        if (selected(filter, "startup.lexicon-freetts", "startup.lexicon-mapped")) {
+            Path mapped = lexiconFile();
+            benchmarks.put("startup.lexicon-freetts", i -> freeTTSLexicon());
+            benchmarks.put("startup.lexicon-mapped", i -> new MappedLexicon(mapped));
+        }
+        if (!selected(filter, "startup.voice-allocation", "startup.voice-allocation-mapped",
+                "tts.synth-cold-short", "tts.synth-cold-long") || !voiceAvailable()) {
+            return benchmarks;
+        }
+        benchmarks.put("startup.voice-allocation", i -> {
+            clearFreeTTSLexicons();
+            Voice voice = newVoice();
+            voice.deallocate();
+            return voice;
+        });
+        if ("startup.voice-allocation-mapped".contains(filter)) {
+            Lexicon mapped = new MappedLexicon(lexiconFile());
+            benchmarks.put("startup.voice-allocation-mapped", i -> {
+                Voice voice = VoiceManager.getInstance().getVoice("kevin16");
+                voice.setLexicon(mapped);
+                voice.allocate();
+                voice.deallocate();
+                return voice;
+            });
+        }
+        benchmarks.put("tts.synth-cold-short", i -> firstSynthesis(SHORT_PHRASE));
+        benchmarks.put("tts.synth-cold-long", i -> firstSynthesis(LONG_PHRASE));
+        return benchmarks;
+    }
+
+    /**
+     * One benchmark by name, steady-state or cold, for the JMH harness in
+     * jmh/, whose classes are in a package and so cannot name this one's.
+     */
+    static IntFunction<Object> benchmark(String name) throws IOException {
+        // Cold ones first: building the others would load the classes a cold run is meant to pay for
+        Op op = coldBenchmarks(name).get(name);
+        if (op == null) {
+            op = voiceBenchmarks(name).get(name);
+        }
+        if (op == null) {
+            op = coreBenchmarks(name).get(name);
+        }
+        if (op == null) {
+            throw new IllegalArgumentException(selected(name, VOICE_BENCHMARKS) && !voiceAvailable()
+                ? "No FreeTTS voice on the classpath for " + name : "No benchmark " + name);
+        }
+        Op found = op;
+        return i -> {
+            try {
+                return found.run(i);
+            } catch (Exception e) {
+                throw new IllegalStateException(name + " failed", e);
+            }
+        };
+    }
+
+    // The real intents plus generated "open <name>" apps, to show lookup cost as the table grows
+    private static IntentMatcher<String> syntheticIntents(int extra) {
+        IntentMatcher.Builder<String> builder = IntentMatcher.builder();
+        for (String phrase : CommandProcessor.intents().phrases()) {
+            builder.add(phrase, phrase).anyOf(phrase);
+        }
+        String[] syllables = {"ka", "lo", "mi", "ne", "tra", "vex", "po", "zu", "ri", "den", "sol", "qua"};
+        Random random = new Random(42);
+        for (int n = 0; n < extra; n++) {
+            StringBuilder name = new StringBuilder();
+            for (int s = 2 + random.nextInt(3); s > 0; s--) {
+                name.append(syllables[random.nextInt(syllables.length)]);
+            }
+            builder.add("app" + n, name.toString()).anyOf("open " + name, "launch " + name);
+        }
+        return builder.build();
+    }
+
+    // Allocating voices is slow, so only do it when a voice benchmark will actually run
+    private static boolean selected(String filter, String... names) {
+        for (String name : names) {
+            if (name.contains(filter)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Result measure(String name, Op op) throws Exception {
+        int i = 0;
+        long warmupEnd = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        while (System.nanoTime() < warmupEnd) {
+            sink ^= Objects.hashCode(op.run(i++));
+        }
+
+        double[] nsPerOp = new double[ROUNDS];
+        long roundNanos = MEASURE_MILLIS * 1_000_000 / ROUNDS;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            long end = start + roundNanos;
+            long count = 0;
+            long now;
+            do {
+                sink ^= Objects.hashCode(op.run(i++));
+                count++;
+            } while ((now = System.nanoTime()) < end);
+            nsPerOp[round] = (now - start) / (double) count;
+        }
+        return new Result(name, "steady", nsPerOp);
+    }
+
+    /** Times COLD_RUNS single invocations, with no warmup. */
+    static Result measureCold(String name, Op op) throws Exception {
+        double[] nanos = new double[COLD_RUNS];
+        for (int run = 0; run < COLD_RUNS; run++) {
+            long start = System.nanoTime();
+            sink ^= Objects.hashCode(op.run(run));
+            nanos[run] = System.nanoTime() - start;
+        }
+        return new Result(name, "cold", nanos);
+    }
+
+    /**
+     * Throughput of a pool of size voices driven by size threads; each round
+     * is the wall time per phrase across all threads.
+     */
+    static Result measurePool(String name, int size) throws Exception {
+        try (VoicePool pool = new VoicePool("kevin16", size, size)) {
+            double[] nsPerPhrase = new double[ROUNDS];
+            runPool(pool, size, WARMUP_MILLIS);
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                long phrases = runPool(pool, size, MEASURE_MILLIS / ROUNDS);
+                nsPerPhrase[round] = (System.nanoTime() - start) / (double) phrases;
+            }
+            return new Result(name, "parallel", nsPerPhrase);
+        }
+    }
+
+    private static long runPool(VoicePool pool, int threads, long millis) throws Exception {
+        long end = System.nanoTime() + millis * 1_000_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads, AppLauncher.daemonThreads("bench-pool"));
+        List<Future<Long>> counts = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int offset = t;
+            counts.add(executor.submit(() -> {
+                long count = 0;
+                do {
+                    VoicePool.Rendered rendered = pool.render(POOL_PHRASES[(int) ((offset + count) % POOL_PHRASES.length)]);
+                    sink ^= Objects.hashCode(rendered);
+                    count++;
+                } while (System.nanoTime() < end);
+                return count;
+            }));
+        }
+        long total = 0;
+        for (Future<Long> count : counts) {
+            total += count.get();
+        }
+        executor.shutdown();
+        return total;
+    }
+
+    private static Result report(Result result) {
+        System.out.printf(Locale.ROOT, "%-28s %14.1f ns/op (best %.1f)  %12.1f ops/s  [%s]%n",
+            result.name, result.mean, result.best, 1e9 / result.mean, result.mode);
+        return result;
+    }
+
+    // ---- FreeTTS ----
+
+    private static boolean voiceAvailable() {
+        System.setProperty("freetts.voices", "com.sun.speech.freetts.en.us.cmu_us_kal.KevinVoiceDirectory");
+        try {
+            return VoiceManager.getInstance().getVoice("kevin16") != null;
+        } catch (RuntimeException | Error e) {
+            // FreeTTS reports a missing voice directory as an Error
+            return false;
+        }
+    }
+
+    // Allocated voice rendering into memory, so timings exclude the sound card
+    private static Voice newVoice() {
+        Voice voice = VoiceManager.getInstance().getVoice("kevin16");
+        voice.allocate();
+        voice.setRate(150);
+        voice.setPitch(100);
+        voice.setAudioPlayer(new BufferingAudioPlayer(null));
+        return voice;
+    }
+
+    private static Object firstSynthesis(String text) {
+        Voice voice = newVoice();
+        try {
+            long start = System.nanoTime();
+            synthesize(voice, (BufferingAudioPlayer) voice.getAudioPlayer(), text);
+            return System.nanoTime() - start;
+        } finally {
+            voice.deallocate();
+        }
+    }
+
+    private static byte[] synthesize(Voice voice, BufferingAudioPlayer player, String text) {
+        player.startRecording();
+        voice.speak(text);
+        return player.stopRecording();
+    }
+
+    // ---- Lexicon ----
+
+    // The compiled lexicon next to the assistant, or a fresh one if compile.bat has not made it yet
+    private static Path lexiconFile() throws IOException {
+        Path file = Paths.get(MappedLexicon.DEFAULT_FILE);
+        if (!Files.isRegularFile(file)) {
+            file = Files.createTempFile("cmulex", ".map");
+            file.toFile().deleteOnExit();
+            MappedLexicon.compile(file);
+        }
+        return file;
+    }
+
+    // What voice.allocate() loads, parsed afresh each time
+    private static Lexicon freeTTSLexicon() throws IOException {
+        clearFreeTTSLexicons();
+        Lexicon lexicon = new CMULexicon("cmulex");
+        lexicon.load();
+        return lexicon;
+    }
+
+    // LexiconImpl keeps each parsed lexicon for the life of the process, which would hide the load cost
+    private static void clearFreeTTSLexicons() {
+        try {
+            Field loaded = LexiconImpl.class.getDeclaredField("loadedCompiledLexicons");
+            loaded.setAccessible(true);
+            Map<?, ?> lexicons = (Map<?, ?>) loaded.get(null);
+            if (lexicons != null) {
+                lexicons.clear();
+            }
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("FreeTTS lexicon cache not found", e);
+        }
+    }
+
+    // What tellTime() and tellDate() say over a few weeks of different times
+    private static String[] dynamicPhrases() {
+        DateTimeFormatter time = DateTimeFormatter.ofPattern("h:mm a");
+        DateTimeFormatter date = DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy");
+        List<String> phrases = new ArrayList<>();
+        LocalDateTime when = LocalDateTime.of(2026, 1, 1, 0, 0);
+        for (int i = 0; i < 40; i++) {
+            phrases.add("The current time is " + when.format(time));
+            phrases.add("Today is " + when.format(date));
+            when = when.plusDays(9).plusMinutes(97);
+        }
+        return phrases.toArray(new String[0]);
+    }
+
+    // Words from the replies, plus a few the lexicon does not know
+    private static String[] lexiconWords() {
+        List<String> words = new ArrayList<>();
+        for (String phrase : POOL_PHRASES) {
+            for (String word : phrase.toLowerCase(Locale.ROOT).split("[^a-z]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        words.addAll(Arrays.asList("whatsapp", "msinfo", "youtube", "gmail"));
+        return words.toArray(new String[0]);
+    }
+
+    /** Heap still in use while the created object is reachable, measured after full collections. */
+    static long retainedBytes(Op create) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        long before = memory.getHeapMemoryUsage().getUsed();
+        Object retained = create.run(0);
+        memory.gc();
+        long after = memory.getHeapMemoryUsage().getUsed();
+        sink ^= Objects.hashCode(retained);
+        return Math.max(0, after - before);
+    }
+
+    // ---- JSON results ----
+
+    private static void writeJson(Path file, List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int r = 0; r < results.size(); r++) {
+            Result result = results.get(r);
+            StringJoiner rounds = new StringJoiner(",", "[", "]");
+            for (double round : result.rounds) {
+                rounds.add(String.format(Locale.ROOT, "%.1f", round));
+            }
+            json.append(String.format(Locale.ROOT,
+                "  {\"name\":%s,\"mode\":%s,\"meanNs\":%.1f,\"bestNs\":%.1f,\"opsPerSec\":%.1f,\"roundsNs\":%s}",
+                BatchRunner.quote(result.name), BatchRunner.quote(result.mode),
+                result.mean, result.best, 1e9 / result.mean, rounds));
+            json.append(r + 1 < results.size() ? ",\n" : "\n");
+        }
+        json.append("]\n");
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final Pattern BASELINE_ENTRY =
+        Pattern.compile("\"name\":\"([^\"]+)\".*?\"meanNs\":([0-9.eE+-]+)");
+
+    // Only reads back what writeJson produces, so a full JSON parser is not needed
+    private static Map<String, Double> readBaseline(Path file) throws IOException {
+        Map<String, Double> baseline = new HashMap<>();
+        Matcher m = BASELINE_ENTRY.matcher(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        while (m.find()) {
+            baseline.put(m.group(1), Double.parseDouble(m.group(2)));
+        }
+        return baseline;
+    }
+
+    private static void compare(Map<String, Double> baseline, List<Result> results) {
+        System.out.println("📊 Compared to baseline:");
+        int regressions = 0;
+        for (Result result : results) {
+            Double before = baseline.get(result.name);
+            if (before == null) {
+                System.out.printf("   %-28s new%n", result.name);
+                continue;
+            }
+            double change = (result.mean - before) / before * 100;
+            String flag = change > REGRESSION_PERCENT ? "  ❌ slower"
+                : change < -REGRESSION_PERCENT ? "  ✅ faster" : "";
+            if (change > REGRESSION_PERCENT) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "   %-28s %14.1f -> %14.1f ns/op  %+6.1f%%%s%n",
+                result.name, before, result.mean, change, flag);
+        }
+        System.out.println(regressions == 0 ? "✅ No regressions" : "❌ " + regressions + " regression(s)");
+    }
+
+    // The split-based handleMath that SpokenMath replaced, kept for comparison
+    private static String legacyMath(String mathExpression) {
+        if (mathExpression.contains("plus") || mathExpression.contains("+")) {
+            String[] parts = mathExpression.split("plus|\\+");
+            double num1 = Double.parseDouble(parts[0].trim());
+            double num2 = Double.parseDouble(parts[1].trim());
+            return num1 + " plus " + num2 + " equals " + (num1 + num2);
+        } else if (mathExpression.contains("minus") || mathExpression.contains("-")) {
+            String[] parts = mathExpression.split("minus|-");
+            double num1 = Double.parseDouble(parts[0].trim());
+            double num2 = Double.parseDouble(parts[1].trim());
+            return num1 + " minus " + num2 + " equals " + (num1 - num2);
+        } else {
+            String[] parts = mathExpression.split("times|\\*");
+            double num1 = Double.parseDouble(parts[0].trim());
+            double num2 = Double.parseDouble(parts[1].trim());
+            return num1 + " times " + num2 + " equals " + (num1 * num2);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.StringJoiner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Owns everything that has to be released when the assistant stops: the
+ * voice and audio lines, recognizer and launched child processes, the
+ * journal and background executors.
+ *
+ * Shutdown runs once, whether it starts from the exit command or from a
+ * shutdown hook (Ctrl+C, SIGTERM, end of input). It first waits for the
+ * registered drains, such as pending speech, up to a shared deadline of
+ * -Dassistant.shutdown.drainMillis. It then closes every resource in
+ * parallel and waits at most -Dassistant.shutdown.closeMillis for them.
+ * A resource that is still closing after that is reported and left to the
+ * JVM. The time each step took is printed with the metrics report.
+ */
+class AssistantLifecycle {
+    private static final long DEFAULT_DRAIN_MILLIS = 10_000;
+    private static final long DEFAULT_CLOSE_MILLIS = 2_000;
+
+    /** Something to wait for before resources are closed; false if it gave up at the timeout. */
+    interface Drain {
+        boolean await(long timeoutMillis) throws InterruptedException;
+    }
+
+    private static final class Named<T> {
+        final String name;
+        final T value;
+
+        Named(String name, T value) {
+            this.name = name;
+            this.value = value;
+        }
+    }
+
+    private final long drainMillis;
+    private final long closeMillis;
+    private final List<Named<Drain>> drains = new ArrayList<>();
+    private final List<Named<AutoCloseable>> resources = new ArrayList<>();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    AssistantLifecycle(long drainMillis, long closeMillis) {
+        this.drainMillis = drainMillis;
+        this.closeMillis = closeMillis;
+    }
+
+    /** Lifecycle with the -Dassistant.shutdown.* deadlines and a shutdown hook already installed. */
+    static AssistantLifecycle fromSystemProperties() {
+        AssistantLifecycle lifecycle = new AssistantLifecycle(
+            Long.getLong("assistant.shutdown.drainMillis", DEFAULT_DRAIN_MILLIS),
+            Long.getLong("assistant.shutdown.closeMillis", DEFAULT_CLOSE_MILLIS));
+        Runtime.getRuntime().addShutdownHook(new Thread(lifecycle::shutdown, "assistant-shutdown"));
+        return lifecycle;
+    }
+
+    /** Waited for, in registration order, before any resource is closed. */
+    synchronized AssistantLifecycle drain(String name, Drain drain) {
+        drains.add(new Named<>(name, drain));
+        return this;
+    }
+
+    /** Closed in parallel with the other resources at shutdown. */
+    synchronized <T extends AutoCloseable> T register(String name, T resource) {
+        resources.add(new Named<>(name, resource));
+        return resource;
+    }
+
+    /** Shuts down and exits the JVM; the shutdown hook then finds nothing left to do. */
+    void exit() {
+        shutdown();
+        System.exit(0);
+    }
+
+    /** Drains, closes and reports; later calls wait for the first one to finish. */
+    void shutdown() {
+        if (!started.compareAndSet(false, true)) {
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+        try {
+            List<Named<Drain>> drainList;
+            List<Named<AutoCloseable>> resourceList;
+            synchronized (this) {
+                drainList = new ArrayList<>(drains);
+                resourceList = new ArrayList<>(resources);
+            }
+            long begun = System.nanoTime();
+            drainAll(drainList, begun + TimeUnit.MILLISECONDS.toNanos(drainMillis));
+            long drained = System.nanoTime();
+            String closed = closeAll(resourceList);
+            long ended = System.nanoTime();
+            System.out.print(PipelineMetrics.GLOBAL.report());
+            System.out.printf(Locale.ROOT, "🛑 Shut down in %.0f ms (drain %.0f ms, close %.0f ms: %s)%n",
+                (ended - begun) / 1e6, (drained - begun) / 1e6, (ended - drained) / 1e6, closed);
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private static void drainAll(List<Named<Drain>> drainList, long deadline) {
+        for (Named<Drain> drain : drainList) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                if (!drain.value.await(Math.max(0, remaining))) {
+                    System.err.println("⏱️  Gave up waiting for " + drain.name);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("⚠️  Could not drain " + drain.name + ": " + e);
+            }
+        }
+    }
+
+    // Per-resource close times in milliseconds, or what went wrong
+    private String closeAll(List<Named<AutoCloseable>> resourceList) {
+        ExecutorService closers = Executors.newCachedThreadPool(AppLauncher.daemonThreads("assistant-close"));
+        List<Future<Long>> closing = new ArrayList<>();
+        for (Named<AutoCloseable> resource : resourceList) {
+            closing.add(closers.submit(() -> {
+                long begun = System.nanoTime();
+                resource.value.close();
+                return System.nanoTime() - begun;
+            }));
+        }
+        closers.shutdown();
+        try {
+            closers.awaitTermination(closeMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        StringJoiner report = new StringJoiner(", ");
+        for (int i = 0; i < resourceList.size(); i++) {
+            String name = resourceList.get(i).name;
+            Future<Long> result = closing.get(i);
+            if (!result.isDone()) {
+                result.cancel(true);
+                report.add(name + " still closing");
+                continue;
+            }
+            try {
+                report.add(String.format(Locale.ROOT, "%s %.0f", name, result.get() / 1e6));
+            } catch (ExecutionException e) {
+                System.err.println("⚠️  Error closing " + name + ": " + e.getCause());
+                report.add(name + " failed");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return report.toString();
+    }
+}
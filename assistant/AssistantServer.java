@@ -0,0 +1,141 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serves many desk clients from one JVM over a loopback TCP socket.
+ *
+ * Protocol: the client sends one command per line (UTF-8). For each one
+ * the server answers with a single JSON header line, as in batch mode plus
+ * an "audioBytes" field, followed by exactly that many bytes of WAV audio
+ * of the spoken reply (0 when there is no voice). The "exit" command is
+ * answered and then the session is closed.
+ *
+ * Every session runs on its own thread - a virtual thread on Java 21 and
+ * later - with its own headless CommandProcessor, so nothing is launched
+ * or played on the server; launch commands are returned to the client.
+ */
+class AssistantServer {
+    static final int DEFAULT_PORT = 5055;
+
+    private final ServerSocket serverSocket;
+    private final SpeechRenderer renderer;
+    private final CommandJournal journal;
+    private final boolean renderAudio = Boolean.parseBoolean(System.getProperty("assistant.server.audio", "true"));
+    private final ExecutorService sessions = sessionExecutor("assistant-session");
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final AtomicLong totalSessions = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+
+    AssistantServer(int port, SpeechRenderer renderer, CommandJournal journal) throws IOException {
+        this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        this.renderer = renderer;
+        this.journal = journal;
+    }
+
+    /** Runs the server on port until the process is stopped. */
+    static void run(int port) throws IOException {
+        AssistantLifecycle lifecycle = AssistantLifecycle.fromSystemProperties();
+        SpeechRenderer renderer = SpeechRenderer.create();
+        CommandJournal journal = lifecycle.register("journal", CommandJournal.fromSystemProperties());
+        AssistantServer server = new AssistantServer(port, renderer, journal);
+        lifecycle.register("server", () -> {
+            server.close();
+            System.out.println("📊 " + server.stats());
+        });
+        lifecycle.register("renderer", renderer::close);
+        PipelineMetrics.GLOBAL.registerMBean();
+        CommandProcessor.COMMANDS.watch();
+        lifecycle.register("command watch", CommandProcessor.COMMANDS::close);
+        System.out.println("🌐 Assistant server listening on " + server.serverSocket.getLocalSocketAddress()
+            + (renderer.hasVoice() && server.renderAudio ? " (text + WAV replies)" : " (text replies)"));
+        server.serve();
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /** Accepts clients until the server socket is closed. */
+    void serve() throws IOException {
+        try {
+            while (true) {
+                Socket client = serverSocket.accept();
+                client.setTcpNoDelay(true);
+                sessions.execute(() -> session(client));
+            }
+        } catch (SocketException e) {
+            if (!serverSocket.isClosed()) {
+                throw e;
+            }
+        }
+    }
+
+    private void session(Socket client) {
+        activeSessions.incrementAndGet();
+        totalSessions.incrementAndGet();
+        CommandProcessor processor = CommandProcessor.headless();
+        try (Socket socket = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.trim().toLowerCase();
+                if (command.isEmpty()) {
+                    continue;
+                }
+                CommandResult result = processor.processCommand(command);
+                requests.incrementAndGet();
+                long renderStarted = System.nanoTime();
+                byte[] wav = renderAudio ? renderer.renderWav(result.responseText()) : new byte[0];
+                journal.append(CommandJournal.Source.SERVER, line, result, 0, System.nanoTime() - renderStarted);
+                // Batch-mode JSON with the audio length appended as a last field
+                String json = BatchRunner.toJson(result);
+                String header = json.substring(0, json.length() - 1) + ",\"audioBytes\":" + wav.length + "}\n";
+                out.write(header.getBytes(StandardCharsets.UTF_8));
+                out.write(wav);
+                out.flush();
+                if (result.exit) {
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            // Client went away mid-request
+        } finally {
+            activeSessions.decrementAndGet();
+        }
+    }
+
+    String stats() {
+        return String.format("%d requests over %d sessions, %d active; speech cache %s",
+            requests.get(), totalSessions.get(), activeSessions.get(), renderer.cacheStats());
+    }
+
+    void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        sessions.shutdownNow();
+    }
+
+    /**
+     * One thread per task: virtual threads when the JVM has them (Java 21+),
+     * otherwise a cached pool of daemon platform threads.
+     */
+    static ExecutorService sessionExecutor(String name) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(AppLauncher.daemonThreads(name));
+        }
+    }
+}
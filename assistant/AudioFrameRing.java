@@ -0,0 +1,67 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size ring of audio frames held in one preallocated off-heap buffer.
+ *
+ * One capture thread writes frames; other threads may copy frames out by
+ * sequence number as long as they have not been overwritten. Nothing is
+ * allocated once the ring exists.
+ */
+class AudioFrameRing {
+    private final ByteBuffer frames;
+    private final int frameBytes;
+    private final int capacity;
+    private volatile long written;
+
+    AudioFrameRing(int frameBytes, int capacity) {
+        this.frameBytes = frameBytes;
+        this.capacity = capacity;
+        this.frames = ByteBuffer.allocateDirect(frameBytes * capacity);
+    }
+
+    int frameBytes() {
+        return frameBytes;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /** Sequence number the next frame will get; also the count of frames written. */
+    long written() {
+        return written;
+    }
+
+    /** Oldest sequence number that is still in the ring. */
+    long oldest() {
+        return Math.max(0, written - capacity);
+    }
+
+    /** Appends one frame and returns its sequence number. Single writer only. */
+    long write(byte[] frame, int offset) {
+        long sequence = written;
+        int position = (int) (sequence % capacity) * frameBytes;
+        ByteBuffer slot = frames.duplicate();
+        slot.position(position);
+        slot.put(frame, offset, frameBytes);
+        written = sequence + 1;
+        return sequence;
+    }
+
+    /**
+     * Copies frames [from, to) into dst, clamped to what is still available.
+     * Returns the number of bytes copied.
+     */
+    int copy(long from, long to, byte[] dst) {
+        from = Math.max(from, oldest());
+        to = Math.min(to, written);
+        int copied = 0;
+        ByteBuffer view = frames.duplicate();
+        for (long sequence = from; sequence < to && copied + frameBytes <= dst.length; sequence++) {
+            view.position((int) (sequence % capacity) * frameBytes);
+            view.get(dst, copied, frameBytes);
+            copied += frameBytes;
+        }
+        return copied;
+    }
+}
@@ -0,0 +1,221 @@
+import javax.sound.sampled.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.awt.Toolkit;
+
+class AudioRecorder {
+    static final int FRAME_MILLIS = 20;
+    private static final int RING_SECONDS = 30;
+    
+    /** Receives each endpointed utterance as 16 kHz 16-bit mono PCM. */
+    interface UtteranceListener {
+        void onUtterance(byte[] pcm, AudioFormat format);
+    }
+    
+    /** Receives every 20 ms frame, in a buffer that is reused for the next one. */
+    interface FrameListener {
+        void onFrame(byte[] pcm, int offset, int length);
+    }
+    
+    private AudioFormat audioFormat;
+    private TargetDataLine targetDataLine;
+    private final int frameBytes;
+    private final AudioFrameRing ring;
+    private final byte[] frame;
+    private volatile boolean capturing;
+    private Thread captureThread;
+    private UtteranceListener utteranceListener;
+    private FrameListener frameListener;
+    // Set while someone waits for the next utterance; frames bypass the frame listener meanwhile
+    private volatile CompletableFuture<byte[]> nextUtterance;
+    private final EnergyEndpointer endpointer = new EnergyEndpointer(new EnergyEndpointer.Listener() {
+        @Override
+        public void onSpeechStart(long startFrame) {
+            System.out.println("🔴 Speech detected...");
+        }
+        
+        @Override
+        public void onSpeechEnd(long startFrame, long endFrame) {
+            handOff(startFrame, endFrame);
+        }
+    });
+    
+    public AudioRecorder() {
+        // Configure audio format for recording
+        float sampleRate = 16000;
+        int sampleSizeInBits = 16;
+        int channels = 1;
+        boolean signed = true;
+        boolean bigEndian = false;
+        
+        audioFormat = new AudioFormat(sampleRate, sampleSizeInBits, channels, signed, bigEndian);
+        
+        // Fixed-size frames in a preallocated ring; the capture loop never allocates
+        frameBytes = (int) (sampleRate * FRAME_MILLIS / 1000) * audioFormat.getFrameSize();
+        ring = new AudioFrameRing(frameBytes, RING_SECONDS * 1000 / FRAME_MILLIS);
+        frame = new byte[frameBytes];
+    }
+    
+    public AudioFormat getAudioFormat() {
+        return audioFormat;
+    }
+    
+    public void setUtteranceListener(UtteranceListener listener) {
+        this.utteranceListener = listener;
+    }
+    
+    /** Sends frames to listener instead of the ring and endpointer, e.g. for wake-word spotting. */
+    public void setFrameListener(FrameListener listener) {
+        this.frameListener = listener;
+    }
+    
+    /**
+     * Completes with the next endpointed utterance as 16 kHz 16-bit mono
+     * PCM. Until then frames go to the ring and endpointer even when a
+     * frame listener is set; cancel the future to stop waiting.
+     */
+    public CompletableFuture<byte[]> nextUtterance() {
+        CompletableFuture<byte[]> next = new CompletableFuture<>();
+        nextUtterance = next;
+        return next;
+    }
+    
+    public boolean isRecording() {
+        return capturing;
+    }
+    
+    /** Opens the microphone and starts the capture thread; false if no line could be opened. */
+    public boolean startRecording() {
+        try {
+            DataLine.Info info = new DataLine.Info(TargetDataLine.class, audioFormat);
+            targetDataLine = (TargetDataLine) AudioSystem.getLine(info);
+            targetDataLine.open(audioFormat);
+            targetDataLine.start();
+            
+            capturing = true;
+            captureThread = new Thread(this::captureLoop, "audio-capture");
+            captureThread.setDaemon(true);
+            captureThread.start();
+            System.out.println("🎙️  Recording started...");
+            return true;
+        } catch (Exception e) {
+            System.err.println("❌ Error starting recording: " + e.getMessage());
+            return false;
+        }
+    }
+    
+    public void stopRecording() {
+        capturing = false;
+        if (targetDataLine != null) {
+            targetDataLine.stop();
+            targetDataLine.close();
+            System.out.println("🛑 Recording stopped");
+        }
+        if (captureThread != null) {
+            try {
+                captureThread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private void captureLoop() {
+        while (capturing) {
+            int read = 0;
+            while (read < frameBytes && capturing) {
+                int n = targetDataLine.read(frame, read, frameBytes - read);
+                if (n <= 0) {
+                    break;
+                }
+                read += n;
+            }
+            if (read == frameBytes) {
+                consumeFrame(frame);
+            }
+        }
+        endpointer.flush();
+    }
+    
+    /**
+     * Runs a recorded stream (e.g. a WAV file) through the same ring and
+     * endpointer as live capture, for testing without a microphone. Any
+     * PCM rate and channel count is accepted and converted to 16 kHz mono.
+     */
+    public void process(AudioInputStream stream) throws IOException {
+        AudioFormat source = stream.getFormat();
+        // Java Sound converts sample encodings but not rates, so only decode to 16-bit here
+        AudioFormat decoded = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        AudioInputStream pcm = source.matches(decoded) ? stream : AudioSystem.getAudioInputStream(decoded, stream);
+        byte[] samples = toCaptureRate(pcm.readAllBytes(), decoded.getChannels(), decoded.getSampleRate());
+        for (int offset = 0; offset + frameBytes <= samples.length; offset += frameBytes) {
+            System.arraycopy(samples, offset, frame, 0, frameBytes);
+            consumeFrame(frame);
+        }
+        endpointer.flush();
+    }
+    
+    /** Averages 16-bit little-endian channels to mono and linearly resamples to 16 kHz. */
+    private byte[] toCaptureRate(byte[] pcm, int channels, float sampleRate) {
+        int frames = pcm.length / (2 * channels);
+        double step = sampleRate / audioFormat.getSampleRate();
+        int outFrames = (int) (frames / step);
+        byte[] out = new byte[outFrames * 2];
+        for (int i = 0; i < outFrames; i++) {
+            double position = i * step;
+            int index = (int) position;
+            double fraction = position - index;
+            double a = mono(pcm, index, channels);
+            double b = index + 1 < frames ? mono(pcm, index + 1, channels) : a;
+            int sample = (int) Math.round(a + (b - a) * fraction);
+            out[2 * i] = (byte) sample;
+            out[2 * i + 1] = (byte) (sample >> 8);
+        }
+        return out;
+    }
+    
+    private static double mono(byte[] pcm, int frame, int channels) {
+        int sum = 0;
+        for (int c = 0; c < channels; c++) {
+            int at = 2 * (frame * channels + c);
+            sum += (short) ((pcm[at] & 0xff) | (pcm[at + 1] << 8));
+        }
+        return (double) sum / channels;
+    }
+    
+    private void consumeFrame(byte[] data) {
+        CompletableFuture<byte[]> waiting = nextUtterance;
+        if (frameListener != null && (waiting == null || waiting.isDone())) {
+            frameListener.onFrame(data, 0, frameBytes);
+            return;
+        }
+        ring.write(data, 0);
+        endpointer.process(data, 0, frameBytes);
+    }
+    
+    private void handOff(long startFrame, long endFrame) {
+        long from = Math.max(startFrame, ring.oldest());
+        byte[] utterance = new byte[(int) (endFrame - from) * frameBytes];
+        int copied = ring.copy(from, endFrame, utterance);
+        System.out.printf("🛑 Speech ended: %.2fs - %.2fs%n",
+            from * FRAME_MILLIS / 1000.0, endFrame * FRAME_MILLIS / 1000.0);
+        byte[] pcm = Arrays.copyOf(utterance, copied);
+        CompletableFuture<byte[]> waiting = nextUtterance;
+        if (waiting != null) {
+            waiting.complete(pcm);
+        }
+        if (utteranceListener != null) {
+            utteranceListener.onUtterance(pcm, audioFormat);
+        }
+    }
+    
+    public void playBeep() {
+        try {
+            // Generate a simple beep sound to indicate voice input received
+            Toolkit.getDefaultToolkit().beep();
+        } catch (Exception e) {
+            // Ignore beep errors
+        }
+    }
+}
@@ -0,0 +1,111 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-interactive mode: runs newline-delimited commands from a file or
+ * stdin through a headless CommandProcessor. Nothing is spoken or launched.
+ *
+ * Each command produces one JSON line on stdout with the matched intent,
+ * the response, any recorded launch and the processing latency. A
+ * throughput and latency summary goes to stderr at the end so stdout stays
+ * machine-readable.
+ */
+class BatchRunner {
+    private final CommandProcessor processor = CommandProcessor.headless();
+    private long[] latencies = new long[1024];
+    private int count;
+
+    /** Runs the commands in file, or stdin when file is null or "-". */
+    static void run(String file) throws IOException {
+        BatchRunner runner = new BatchRunner();
+        try (BufferedReader in = file == null || file.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16));
+            long started = System.nanoTime();
+            String line;
+            while ((line = in.readLine()) != null) {
+                String command = line.trim().toLowerCase();
+                if (!command.isEmpty()) {
+                    out.println(toJson(runner.process(command)));
+                }
+            }
+            out.flush();
+            runner.printSummary(System.nanoTime() - started);
+        }
+    }
+
+    private CommandResult process(String command) {
+        CommandResult result = processor.processCommand(command);
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = result.latencyNanos;
+        return result;
+    }
+
+    private void printSummary(long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        double seconds = elapsedNanos / 1e9;
+        System.err.printf(Locale.ROOT, "📊 %d commands in %.3f s (%.0f commands/s)%n",
+            count, seconds, count == 0 ? 0 : count / seconds);
+        if (count > 0) {
+            System.err.printf(Locale.ROOT, "   latency µs: p50 %.1f, p90 %.1f, p99 %.1f, max %.1f%n",
+                micros(percentile(sorted, 50)), micros(percentile(sorted, 90)),
+                micros(percentile(sorted, 99)), micros(sorted[count - 1]));
+        }
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double micros(long nanos) {
+        return nanos / (double) TimeUnit.MICROSECONDS.toNanos(1);
+    }
+
+    static String toJson(CommandResult result) {
+        return "{\"input\":" + quote(result.command)
+            + ",\"intent\":" + quote(result.intent)
+            + (result.confidence < 1 ? String.format(Locale.ROOT, ",\"confidence\":%.2f", result.confidence) : "")
+            + ",\"response\":" + quote(result.responseText())
+            + ",\"launch\":" + (result.launches.isEmpty() ? "null" : quote(String.join(" && ", result.launches)))
+            + ",\"latencyMicros\":" + String.format(Locale.ROOT, "%.1f", micros(result.latencyNanos))
+            + "}";
+    }
+
+    /** JSON string literal for s. */
+    static String quote(String s) {
+        if (s == null) {
+            return "null";
+        }
+        StringBuilder out = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+}
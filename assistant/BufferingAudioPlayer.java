@@ -0,0 +1,206 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.audio.AudioPlayer;
+
+/**
+ * FreeTTS audio player that keeps a copy of the PCM it is given.
+ *
+ * With a delegate it works as a tee: audio is played as usual and captured
+ * at the same time. Without one (delegate == null) it only renders into
+ * memory, which is what offline and pooled synthesis use.
+ */
+class BufferingAudioPlayer implements AudioPlayer {
+    private static final int REPLAY_CHUNK = 4096;
+
+    private final AudioPlayer delegate;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private final byte[] replayChunk = new byte[REPLAY_CHUNK];
+    private AudioFormat format;
+    private float volume = 1.0f;
+    private volatile boolean recording;
+    private volatile boolean cancelled;
+    private volatile long firstWriteNanos;
+
+    BufferingAudioPlayer(AudioPlayer delegate) {
+        this.delegate = delegate;
+    }
+
+    /** Starts capturing; anything captured before is discarded. */
+    synchronized void startRecording() {
+        captured.reset();
+        firstWriteNanos = 0;
+        recording = true;
+    }
+
+    /**
+     * System.nanoTime() of the first audio written since startRecording()
+     * or replay(), or 0 if nothing has been written yet.
+     */
+    long firstWriteNanos() {
+        return firstWriteNanos;
+    }
+
+    /** Stops capturing and returns the PCM, or null if playback was cancelled. */
+    synchronized byte[] stopRecording() {
+        recording = false;
+        return cancelled || captured.size() == 0 ? null : captured.toByteArray();
+    }
+
+    /**
+     * Undoes cancel(). Nothing else does, so a cancel that arrives between
+     * utterances still stops the next startRecording() or replay().
+     */
+    void clearCancel() {
+        cancelled = false;
+    }
+
+    /**
+     * Plays previously captured PCM through the delegate as one utterance.
+     * Returns false if it was cancelled before or part way.
+     */
+    boolean replay(AudioFormat pcmFormat, ByteBuffer pcm) {
+        if (cancelled) {
+            return false;
+        }
+        firstWriteNanos = 0;
+        ByteBuffer source = pcm.duplicate();
+        setAudioFormat(pcmFormat);
+        begin(source.remaining());
+        while (source.hasRemaining()) {
+            int n = Math.min(replayChunk.length, source.remaining());
+            source.get(replayChunk, 0, n);
+            if (!write(replayChunk, 0, n)) {
+                return false;
+            }
+        }
+        return end() && drain();
+    }
+
+    @Override
+    public synchronized void setAudioFormat(AudioFormat format) {
+        this.format = format;
+        if (delegate != null) {
+            delegate.setAudioFormat(format);
+        }
+    }
+
+    @Override
+    public AudioFormat getAudioFormat() {
+        return format;
+    }
+
+    @Override
+    public void pause() {
+        if (delegate != null) {
+            delegate.pause();
+        }
+    }
+
+    @Override
+    public void resume() {
+        if (delegate != null) {
+            delegate.resume();
+        }
+    }
+
+    @Override
+    public void reset() {
+        if (delegate != null) {
+            delegate.reset();
+        }
+    }
+
+    @Override
+    public boolean drain() {
+        return delegate == null || delegate.drain();
+    }
+
+    @Override
+    public void begin(int size) {
+        if (delegate != null) {
+            delegate.begin(size);
+        }
+    }
+
+    @Override
+    public boolean end() {
+        return !cancelled && (delegate == null || delegate.end());
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        if (delegate != null) {
+            delegate.cancel();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (delegate != null) {
+            delegate.close();
+        }
+    }
+
+    @Override
+    public float getVolume() {
+        return delegate == null ? volume : delegate.getVolume();
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        this.volume = volume;
+        if (delegate != null) {
+            delegate.setVolume(volume);
+        }
+    }
+
+    @Override
+    public long getTime() {
+        return delegate == null ? 0 : delegate.getTime();
+    }
+
+    @Override
+    public void resetTime() {
+        if (delegate != null) {
+            delegate.resetTime();
+        }
+    }
+
+    @Override
+    public void startFirstSampleTimer() {
+        if (delegate != null) {
+            delegate.startFirstSampleTimer();
+        }
+    }
+
+    @Override
+    public boolean write(byte[] audioData) {
+        return write(audioData, 0, audioData.length);
+    }
+
+    @Override
+    public boolean write(byte[] audioData, int offset, int length) {
+        if (cancelled) {
+            return false;
+        }
+        if (firstWriteNanos == 0) {
+            firstWriteNanos = System.nanoTime();
+        }
+        if (recording) {
+            synchronized (this) {
+                captured.write(audioData, offset, length);
+            }
+        }
+        return delegate == null || delegate.write(audioData, offset, length);
+    }
+
+    @Override
+    public void showMetrics() {
+        if (delegate != null) {
+            delegate.showMetrics();
+        }
+    }
+}
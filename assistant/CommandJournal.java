@@ -0,0 +1,367 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary record of every command: when it arrived, what was
+ * typed or recognized, what it was normalized to, the intent it matched
+ * and how long each stage took. JournalReplay feeds a journal back through
+ * the command pipeline.
+ *
+ * Enabled with -Dassistant.journal=&lt;directory&gt;. Records are encoded into
+ * a direct buffer and written through a FileChannel when it fills up, once
+ * a second (-Dassistant.journal.flushMillis) and on close, so appending
+ * costs no system call. Each run starts a new segment, and a segment is
+ * closed once it reaches -Dassistant.journal.segmentBytes; only the newest
+ * -Dassistant.journal.maxSegments are kept.
+ *
+ * Segment layout (big-endian): "CJNL", version, then records. A record is
+ * its length, the fields of Entry with strings as unsigned-short-prefixed
+ * UTF-8, and a CRC32 of everything after the length. A reader stops at the
+ * first short or corrupt record, which is what a crash mid-write leaves.
+ */
+class CommandJournal implements AutoCloseable {
+    static final String SEGMENT_PREFIX = "commands-";
+    static final String SEGMENT_SUFFIX = ".journal";
+    private static final int MAGIC = 0x434A4E4C; // "CJNL"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    // Keeps every record well under the buffer size
+    private static final int MAX_TEXT_CHARS = 1000;
+    private static final long DEFAULT_SEGMENT_BYTES = 8L * 1024 * 1024;
+    private static final int DEFAULT_MAX_SEGMENTS = 32;
+    private static final long DEFAULT_FLUSH_MILLIS = 1000;
+
+    /** Where a command came from. */
+    enum Source {
+        TYPED, VOICE, SERVER
+    }
+
+    /** One journaled command. */
+    static final class Entry {
+        final long epochMillis;
+        final Source source;
+        final String input;
+        final String command;
+        final String intent;
+        final float confidence;
+        final long recognizeNanos;
+        final long matchNanos;
+        final long processNanos;
+        final long renderNanos;
+
+        Entry(long epochMillis, Source source, String input, String command, String intent, float confidence,
+              long recognizeNanos, long matchNanos, long processNanos, long renderNanos) {
+            this.epochMillis = epochMillis;
+            this.source = source;
+            this.input = input;
+            this.command = command;
+            this.intent = intent;
+            this.confidence = confidence;
+            this.recognizeNanos = recognizeNanos;
+            this.matchNanos = matchNanos;
+            this.processNanos = processNanos;
+            this.renderNanos = renderNanos;
+        }
+    }
+
+    /** Journal that records nothing, used when -Dassistant.journal is not set. */
+    static final CommandJournal DISABLED = new CommandJournal();
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final ByteBuffer buffer;
+    private final CRC32 crc = new CRC32();
+    private final ScheduledExecutorService flusher;
+    private FileChannel channel;
+    private int segmentIndex;
+    private long segmentSize;
+    private long appended;
+    private boolean failed;
+
+    private CommandJournal() {
+        this.directory = null;
+        this.segmentBytes = 0;
+        this.maxSegments = 0;
+        this.buffer = null;
+        this.flusher = null;
+    }
+
+    CommandJournal(Path directory, long segmentBytes, int maxSegments, long flushMillis) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = Math.max(segmentBytes, HEADER_BYTES + BUFFER_BYTES);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+        Files.createDirectories(directory);
+        List<Path> existing = segments(directory);
+        segmentIndex = existing.isEmpty() ? 0 : segmentIndex(existing.get(existing.size() - 1));
+        openNextSegment();
+        flusher = Executors.newSingleThreadScheduledExecutor(AppLauncher.daemonThreads("journal-flush"));
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Journal configured by -Dassistant.journal, or DISABLED. The caller closes it. */
+    static CommandJournal fromSystemProperties() {
+        String directory = System.getProperty("assistant.journal");
+        if (directory == null || directory.isEmpty()) {
+            return DISABLED;
+        }
+        try {
+            CommandJournal journal = new CommandJournal(Paths.get(directory),
+                Long.getLong("assistant.journal.segmentBytes", DEFAULT_SEGMENT_BYTES),
+                Integer.getInteger("assistant.journal.maxSegments", DEFAULT_MAX_SEGMENTS),
+                Long.getLong("assistant.journal.flushMillis", DEFAULT_FLUSH_MILLIS));
+            System.out.println("📝 Journaling commands to " + journal.currentSegment());
+            return journal;
+        } catch (IOException e) {
+            System.err.println("⚠️  Command journal disabled, cannot write to " + directory + ": " + e.getMessage());
+            return DISABLED;
+        }
+    }
+
+    boolean isEnabled() {
+        return directory != null;
+    }
+
+    /** Records what the processor did with input; renderNanos is 0 when no audio was rendered. */
+    void append(Source source, String input, CommandResult result, long recognizeNanos, long renderNanos) {
+        if (!isEnabled()) {
+            return;
+        }
+        append(new Entry(System.currentTimeMillis(), source, input, result.command, result.intent,
+            (float) result.confidence, recognizeNanos, result.matchNanos, result.latencyNanos, renderNanos));
+    }
+
+    synchronized void append(Entry entry) {
+        if (!isEnabled() || failed || channel == null) {
+            return;
+        }
+        byte[] input = utf8(entry.input);
+        byte[] command = utf8(entry.command);
+        byte[] intent = utf8(entry.intent);
+        int body = 8 + 1 + 4 + 4 * 8 + 2 + input.length + 2 + command.length + 2 + intent.length;
+        int record = 4 + body + 4;
+        try {
+            if (segmentSize + record > segmentBytes) {
+                rotate();
+            }
+            if (buffer.remaining() < record) {
+                flushBuffer();
+            }
+            buffer.putInt(body);
+            int start = buffer.position();
+            buffer.putLong(entry.epochMillis)
+                .put((byte) entry.source.ordinal())
+                .putFloat(entry.confidence)
+                .putLong(entry.recognizeNanos)
+                .putLong(entry.matchNanos)
+                .putLong(entry.processNanos)
+                .putLong(entry.renderNanos);
+            putText(input);
+            putText(command);
+            putText(intent);
+            ByteBuffer written = buffer.duplicate();
+            written.position(start).limit(buffer.position());
+            crc.reset();
+            crc.update(written);
+            buffer.putInt((int) crc.getValue());
+            segmentSize += record;
+            appended++;
+        } catch (IOException e) {
+            // The assistant keeps working; only the journal stops
+            failed = true;
+            System.err.println("⚠️  Command journal stopped: " + e.getMessage());
+        }
+    }
+
+    long appended() {
+        return appended;
+    }
+
+    synchronized Path currentSegment() {
+        return directory == null ? null : segmentPath(directory, segmentIndex);
+    }
+
+    /** Writes buffered records to the current segment. */
+    synchronized void flush() throws IOException {
+        if (channel != null) {
+            flushBuffer();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!isEnabled()) {
+            return;
+        }
+        flusher.shutdownNow();
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            try {
+                flushBuffer();
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("⚠️  Command journal did not close cleanly: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException e) {
+            synchronized (this) {
+                failed = true;
+            }
+            System.err.println("⚠️  Command journal stopped: " + e.getMessage());
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void rotate() throws IOException {
+        flushBuffer();
+        channel.close();
+        openNextSegment();
+        List<Path> all = segments(directory);
+        for (int i = 0; i < all.size() - maxSegments; i++) {
+            Files.deleteIfExists(all.get(i));
+        }
+    }
+
+    // Always a fresh file: a segment left by a crash may end in a torn record
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        channel = FileChannel.open(segmentPath(directory, segmentIndex),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        segmentSize = HEADER_BYTES;
+    }
+
+    private void putText(byte[] text) {
+        buffer.putShort((short) text.length).put(text);
+    }
+
+    private static byte[] utf8(String text) {
+        if (text == null) {
+            return new byte[0];
+        }
+        return (text.length() > MAX_TEXT_CHARS ? text.substring(0, MAX_TEXT_CHARS) : text)
+            .getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Path segmentPath(Path directory, int index) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    private static int segmentIndex(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Segment files of a journal directory in write order, or just path if it is a file. */
+    static List<Path> segments(Path path) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(path)) {
+            segments.add(path);
+            return segments;
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            files.filter(f -> f.getFileName().toString().matches(SEGMENT_PREFIX + "\\d+" + "\\" + SEGMENT_SUFFIX))
+                .sorted()
+                .forEach(segments::add);
+        }
+        return segments;
+    }
+
+    /** Reads every entry of a journal directory or segment file, oldest first. */
+    static long read(Path path, Consumer<Entry> consumer) throws IOException {
+        long count = 0;
+        for (Path segment : segments(path)) {
+            count += readSegment(segment, consumer);
+        }
+        return count;
+    }
+
+    private static long readSegment(Path segment, Consumer<Entry> consumer) throws IOException {
+        MappedByteBuffer data;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.remaining() < HEADER_BYTES || data.getInt() != MAGIC) {
+            throw new IOException(segment + " is not a command journal");
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException(segment + " has unsupported journal version " + version);
+        }
+        CRC32 crc = new CRC32();
+        long count = 0;
+        while (data.remaining() >= 4) {
+            int recordStart = data.position();
+            int body = data.getInt();
+            if (body <= 0 || data.remaining() < body + 4) {
+                return torn(segment, recordStart, count);
+            }
+            ByteBuffer bodyBytes = data.slice();
+            bodyBytes.limit(body);
+            crc.reset();
+            crc.update(bodyBytes);
+            try {
+                long epochMillis = data.getLong();
+                Source source = Source.values()[data.get()];
+                float confidence = data.getFloat();
+                long recognizeNanos = data.getLong();
+                long matchNanos = data.getLong();
+                long processNanos = data.getLong();
+                long renderNanos = data.getLong();
+                String input = getText(data);
+                String command = getText(data);
+                String intent = getText(data);
+                if (data.position() != recordStart + 4 + body || data.getInt() != (int) crc.getValue()) {
+                    return torn(segment, recordStart, count);
+                }
+                consumer.accept(new Entry(epochMillis, source, input, command, intent, confidence,
+                    recognizeNanos, matchNanos, processNanos, renderNanos));
+                count++;
+            } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+                return torn(segment, recordStart, count);
+            }
+        }
+        return count;
+    }
+
+    private static long torn(Path segment, int offset, long count) {
+        System.err.println("⚠️  " + segment + ": stopped at damaged record at byte " + offset);
+        return count;
+    }
+
+    private static String getText(ByteBuffer data) {
+        byte[] text = new byte[data.getShort() & 0xFFFF];
+        data.get(text);
+        return new String(text, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,313 @@
+import java.util.*;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+
+class CommandProcessor {
+    /** Handler invoked for a matched intent. */
+    interface CommandHandler {
+        void handle(CommandProcessor processor, String command) throws Exception;
+    }
+
+    static final String GREETING = "Hello, I am your voice assistant. How can I help you?";
+    static final String UNKNOWN_RESPONSE = "Sorry, I didn't understand that command. Type or say 'help' to see what I can do.";
+    static final String ERROR_RESPONSE = "Sorry, there was an error processing your request.";
+    static final String HELP_RESPONSE = "Here are some things I can do. I can open applications, websites, tell you time and date, search the web, and much more! Check the console for a detailed list.";
+    static final String GOODBYE_RESPONSE = "Thank you for using the voice assistant. Have a great day! Goodbye!";
+    static final String LAUNCH_FAILED_RESPONSE = "Sorry, I couldn't open that. Make sure the application is installed.";
+
+    // Fuzzy matching only runs for commands with no exact trigger
+    private static final boolean FUZZY_MATCHING = Boolean.parseBoolean(System.getProperty("assistant.fuzzy", "true"));
+
+    // Built-in handlers, referenced from commands.properties as <name>.handler
+    static {
+        CommandRegistry.registerHandler("time", (p, c) -> p.tellTime());
+        CommandRegistry.registerHandler("date", (p, c) -> p.tellDate());
+        CommandRegistry.registerHandler("day", (p, c) -> p.tellDay());
+        CommandRegistry.registerHandler("help", (p, c) -> p.showHelp());
+        CommandRegistry.registerHandler("search", (p, c) -> p.search(c));
+        CommandRegistry.registerHandler("joke", (p, c) -> p.tellJoke());
+        CommandRegistry.registerHandler("coin", (p, c) -> p.flipCoin());
+        CommandRegistry.registerHandler("dice", (p, c) -> p.rollDice());
+        CommandRegistry.registerHandler("math", (p, c) -> p.handleMath(c));
+        CommandRegistry.registerHandler("system_info", (p, c) -> p.showSystemInfo());
+        CommandRegistry.registerHandler("stats", (p, c) -> p.showStats());
+        CommandRegistry.registerHandler("exit", (p, c) -> p.exit());
+    }
+
+    // Loaded from commands.properties; must be initialized after the handlers are registered
+    static final CommandRegistry COMMANDS = CommandRegistry.fromSystemProperties();
+    
+    private TextToSpeech tts;
+    private final AppLauncher launcher;
+    private final boolean headless;
+    private CommandResult result;
+
+    public CommandProcessor(TextToSpeech tts) {
+        this(tts, AppLauncher.fromSystemProperties());
+    }
+    
+    public CommandProcessor(TextToSpeech tts, AppLauncher launcher) {
+        this.tts = tts;
+        this.launcher = launcher;
+        this.headless = false;
+    }
+    
+    private CommandProcessor() {
+        this.tts = null;
+        this.launcher = null;
+        this.headless = true;
+    }
+    
+    /**
+     * Processor for batch and replay use: nothing is spoken, printed or
+     * launched; responses and launch commands are only recorded in the result.
+     */
+    static CommandProcessor headless() {
+        return new CommandProcessor();
+    }
+
+    /** Every reply that does not depend on the command or the clock, e.g. for pre-rendering audio. */
+    static List<String> staticResponses() {
+        List<String> responses = new ArrayList<>(Arrays.asList(GREETING, HELP_RESPONSE, UNKNOWN_RESPONSE,
+            ERROR_RESPONSE, GOODBYE_RESPONSE, LAUNCH_FAILED_RESPONSE));
+        responses.addAll(COMMANDS.current().responses);
+        return responses;
+    }
+
+    /**
+     * What command would say, worked out without speaking, launching or
+     * counting anything. Null unless it exactly matches a command marked
+     * speculative in commands.properties, whose reply is predictable.
+     */
+    static List<String> previewResponses(String command) {
+        CommandRegistry.Table table = COMMANDS.current();
+        IntentMatcher.Match<CommandHandler> match = table.matcher.match(command);
+        if (match == null || !table.speculative.contains(match.intent)) {
+            return null;
+        }
+        CommandProcessor preview = headless();
+        preview.result = new CommandResult(command);
+        try {
+            match.handler.handle(preview, command);
+        } catch (Exception e) {
+            return null;
+        }
+        return preview.result.responses;
+    }
+
+    /** The current command table's matcher; replaced when commands.properties changes. */
+    static IntentMatcher<CommandHandler> intents() {
+        return COMMANDS.current().matcher;
+    }
+
+    public CommandResult processCommand(String command) {
+        long started = System.nanoTime();
+        result = new CommandResult(command);
+        try {
+            // One table for the whole command, even if a reload swaps in a new one meanwhile
+            IntentMatcher<CommandHandler> intents = intents();
+            IntentMatcher.Match<CommandHandler> match = intents.match(command);
+            if (match == null && FUZZY_MATCHING) {
+                match = intents.matchFuzzy(command);
+                if (match != null && !headless) {
+                    System.out.printf("🤔 Assuming you meant '%s' (confidence %.2f)%n", match.phrase, match.confidence);
+                }
+            }
+            result.matchNanos = System.nanoTime() - started;
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.MATCH, result.matchNanos);
+            if (match != null) {
+                result.intent = match.intent;
+                result.confidence = match.confidence;
+                PipelineMetrics.GLOBAL.countIntent(match.intent);
+                match.handler.handle(this, command);
+            } else {
+                result.intent = "unknown";
+                PipelineMetrics.GLOBAL.countIntent(result.intent);
+                respondWithSpeech(UNKNOWN_RESPONSE);
+            }
+
+        } catch (Exception e) {
+            System.err.println("❌ Error processing command: " + e.getMessage());
+            result.intent = "error";
+            respondWithSpeech(ERROR_RESPONSE);
+        }
+        result.latencyNanos = System.nanoTime() - started;
+        return result;
+    }
+    
+    private void tellTime() {
+        String currentTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("h:mm a"));
+        String response = "The current time is " + currentTime;
+        respondWithSpeech(response);
+    }
+    
+    private void tellDate() {
+        String currentDate = LocalDateTime.now().format(DateTimeFormatter.ofPattern("EEEE, MMMM dd, yyyy"));
+        String response = "Today is " + currentDate;
+        respondWithSpeech(response);
+    }
+    
+    private void tellDay() {
+        String dayName = LocalDateTime.now().format(DateTimeFormatter.ofPattern("EEEE"));
+        String response = "Today is " + dayName;
+        respondWithSpeech(response);
+    }
+    
+    private void search(String command) {
+        String searchQuery = command.replace("search for ", "").replace("google search ", "").trim();
+        if (!searchQuery.isEmpty()) {
+            String url = "https://www.google.com/search?q=" + searchQuery.replace(" ", "+");
+            executeCommand("Searching for " + searchQuery, "cmd /c start chrome \"" + url + "\"");
+        } else {
+            respondWithSpeech("What would you like me to search for?");
+        }
+    }
+    
+    private void showSystemInfo() {
+        String response = "You're running Windows with Java Voice Assistant powered by FreeTTS. For detailed system information, I can open System Information.";
+        respondWithSpeech(response);
+        executeCommand("Opening System Information", "cmd /c start msinfo32");
+    }
+    
+    private void showStats() {
+        PipelineMetrics metrics = PipelineMetrics.GLOBAL;
+        LatencyHistogram match = metrics.histogram(PipelineMetrics.Stage.MATCH);
+        LatencyHistogram firstAudio = metrics.histogram(PipelineMetrics.Stage.FIRST_AUDIO);
+        if (!headless) {
+            System.out.print(metrics.report());
+        }
+        respondWithSpeech(String.format(Locale.ROOT,
+            "I have handled %d commands. Matching takes %.2f milliseconds at the 99th percentile, and speech starts after %.0f milliseconds on average.",
+            match.count(), PipelineMetrics.millis(match.percentileNanos(99)), firstAudio.meanNanos() / 1e6));
+    }
+    
+    // The caller shuts down, which lets the goodbye finish first
+    private void exit() {
+        respondWithSpeech(GOODBYE_RESPONSE);
+        result.exit = true;
+    }
+    
+    private void showHelp() {
+        if (headless) {
+            speak(HELP_RESPONSE);
+            return;
+        }
+        System.out.println("\n" + "=".repeat(60));
+        System.out.println("🤖 Assistant Commands:");
+        System.out.println("🖥️  Applications: 'open calculator', 'open notepad', 'open chrome'");
+        System.out.println("🌐 Websites: 'open youtube', 'open google', 'open gmail'");
+        System.out.println("🕐 Time & Date: 'what time is it', 'what date is it'");
+        System.out.println("🔍 Search: 'search for java programming'");
+        System.out.println("🎯 System: 'open control panel', 'open task manager'");
+        System.out.println("🎲 Fun: 'tell me a joke', 'flip a coin', 'roll dice'");
+        System.out.println("🧮 Math: 'calculate 5 plus 3', 'divide 10 by 4', 'what is 2 to the power of 8'");
+        System.out.println("🔊 Voice: 'test voice' to test speech");
+        System.out.println("🚪 Exit: 'exit', 'quit', 'goodbye'");
+        System.out.println("=".repeat(60));
+        
+        speak(HELP_RESPONSE);
+    }
+    
+    private void tellJoke() {
+        String[] jokes = {
+            "Why do Java developers wear glasses? Because they can't C sharp!",
+            "Why did the programmer quit his job? He didn't get arrays!",
+            "How many programmers does it take to change a light bulb? None, that's a hardware problem!",
+            "Why do programmers prefer dark mode? Because light attracts bugs!",
+            "What's a programmer's favorite hangout place? The Foo Bar!",
+            "Why don't programmers like nature? It has too many bugs!",
+            "What do you call 8 hobbits? A hobbyte!",
+            "Why did the developer go broke? Because he used up all his cache!"
+        };
+        
+        Random random = new Random();
+        String joke = jokes[random.nextInt(jokes.length)];
+        respondWithSpeech(joke);
+    }
+    
+    private void flipCoin() {
+        Random random = new Random();
+        String result = random.nextBoolean() ? "Heads" : "Tails";
+        String response = "I flipped a coin and got: " + result + "!";
+        respondWithSpeech(response);
+    }
+    
+    private void rollDice() {
+        Random random = new Random();
+        int result = random.nextInt(6) + 1;
+        String response = "I rolled a dice and got: " + result + "!";
+        respondWithSpeech(response);
+    }
+    
+    private void handleMath(String command) {
+        String mathExpression = command.replace("calculate", "").replace("what is", "").trim();
+        
+        SpokenMath.Expression expression;
+        try {
+            expression = SpokenMath.parse(mathExpression);
+        } catch (SpokenMath.MathException e) {
+            respondWithSpeech("Sorry, I can only handle math like '5 plus 3', 'divide 10 by 4' or '2 to the power of 8'");
+            return;
+        }
+        
+        try {
+            respondWithSpeech(expression.spoken + " equals " + SpokenMath.format(expression.evaluate()));
+        } catch (SpokenMath.MathException e) {
+            respondWithSpeech("Sorry, I couldn't calculate that: " + e.getMessage());
+        }
+    }
+    
+    void executeCommand(String message, String command) {
+        respondWithSpeech(message);
+        result.launches.add(command);
+        if (headless) {
+            return;
+        }
+        
+        // The launch runs in the background; failures are reported when the child exits
+        launcher.launch(command).thenAccept(this::reportLaunch);
+    }
+    
+    private void reportLaunch(AppLauncher.LaunchResult launch) {
+        switch (launch.status) {
+            case EXITED:
+                if (launch.exitCode == 0) {
+                    System.out.printf("🚀 Launched in %.0f ms: %s%n", launch.startNanos / 1e6, launch.command);
+                    return;
+                }
+                System.err.println("❌ Error executing command (exit code " + launch.exitCode + "): " + launch.detail);
+                break;
+            case REJECTED:
+                System.err.println("⚠️  Launch skipped, " + launch.detail + ": " + launch.command);
+                tts.speak("Please wait, I'm still opening the previous applications.");
+                return;
+            case TIMED_OUT:
+                System.err.println("⏱️  Launch " + launch.detail + ": " + launch.command);
+                break;
+            default:
+                System.err.println("❌ Error executing command: " + launch.detail);
+        }
+        System.out.println("🤖 Assistant: " + LAUNCH_FAILED_RESPONSE);
+        tts.speak(LAUNCH_FAILED_RESPONSE);
+    }
+    
+    CompletableFuture<Boolean> respondWithSpeech(String response) {
+        if (!headless) {
+            System.out.println("🤖 Assistant: " + response);
+        }
+        return speak(response);
+    }
+    
+    private CompletableFuture<Boolean> speak(String text) {
+        result.responses.add(text);
+        return headless ? CompletableFuture.completedFuture(false) : tts.speak(text);
+    }
+    
+    /** Barge-in: stops whatever the assistant is saying when new input arrives. */
+    public void interruptSpeech() {
+        if (!headless) {
+            tts.interrupt();
+        }
+    }
+}
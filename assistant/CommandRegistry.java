@@ -0,0 +1,289 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The command table, loaded from commands.properties instead of being
+ * compiled in.
+ *
+ * Each load produces an immutable Table (compiled IntentMatcher plus the
+ * fixed responses it can give) that is published through an
+ * AtomicReference. A command being processed keeps the table it started
+ * with, so a reload never pauses or disturbs in-flight commands. With
+ * watch(), a background thread reloads the file whenever it changes; a
+ * file that fails to parse is reported and the previous table stays (at
+ * startup, the copy bundled on the classpath).
+ *
+ * Code-backed commands such as time and math are registered by name with
+ * registerHandler() and referenced from the file as <name>.handler.
+ */
+class CommandRegistry {
+    static final String DEFAULT_FILE = "commands.properties";
+    static final String BUNDLED = "classpath:" + DEFAULT_FILE;
+    private static final long RELOAD_SETTLE_MILLIS = 200;
+
+    /** One compiled, immutable command table. */
+    static final class Table {
+        final IntentMatcher<CommandProcessor.CommandHandler> matcher;
+        final List<String> responses;
+        // Intents whose reply can be worked out before the command is final
+        final Set<String> speculative;
+        final int commands;
+        final String source;
+
+        Table(IntentMatcher<CommandProcessor.CommandHandler> matcher, List<String> responses, Set<String> speculative,
+              int commands, String source) {
+            this.matcher = matcher;
+            this.responses = Collections.unmodifiableList(responses);
+            this.speculative = Collections.unmodifiableSet(speculative);
+            this.commands = commands;
+            this.source = source;
+        }
+    }
+
+    private static final Map<String, CommandProcessor.CommandHandler> HANDLERS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final AtomicReference<Table> table = new AtomicReference<>();
+    private Thread watcher;
+
+    private CommandRegistry(Path file, Table initial) {
+        this.file = file;
+        this.table.set(initial);
+    }
+
+    /** Makes a built-in handler available to the command file as <name>.handler. */
+    static void registerHandler(String name, CommandProcessor.CommandHandler handler) {
+        HANDLERS.put(name, handler);
+    }
+
+    /**
+     * Registry for -Dassistant.commands, else commands.properties in the
+     * working directory, else the copy on the classpath (which cannot be
+     * watched). -Dassistant.commands=classpath:commands.properties picks
+     * the classpath copy even when there is a file.
+     */
+    static CommandRegistry fromSystemProperties() {
+        String configured = System.getProperty("assistant.commands", DEFAULT_FILE);
+        if (configured.equals(BUNDLED)) {
+            return new CommandRegistry(null, bundled());
+        }
+        Path path = Paths.get(configured);
+        if (Files.isRegularFile(path)) {
+            try {
+                return new CommandRegistry(path, load(path));
+            } catch (IOException | IllegalArgumentException e) {
+                // Keep the path, so fixing the file brings its commands back
+                System.err.println("❌ Could not load commands from " + path + ": " + e.getMessage()
+                    + "; using the bundled commands until it is fixed");
+                return new CommandRegistry(path, bundled());
+            }
+        }
+        if (System.getProperty("assistant.commands") != null) {
+            System.err.println("⚠️  " + path + " not found; using the bundled commands");
+        }
+        return new CommandRegistry(null, bundled());
+    }
+
+    /**
+     * The commands.properties shipped on the classpath. Without it not even
+     * exit works, so a missing or broken copy fails startup.
+     */
+    static Table bundled() {
+        try (InputStream in = CommandRegistry.class.getResourceAsStream("/" + DEFAULT_FILE)) {
+            if (in == null) {
+                throw new IllegalStateException("No command table: " + DEFAULT_FILE
+                    + " is neither in the working directory nor on the classpath");
+            }
+            return parse(new InputStreamReader(in, StandardCharsets.UTF_8), BUNDLED);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalStateException("Could not load the bundled " + DEFAULT_FILE + ": " + e.getMessage(), e);
+        }
+    }
+
+    Table current() {
+        return table.get();
+    }
+
+    /** Loads the file again; returns a fresh table without publishing it. */
+    Table loadTable() throws IOException {
+        return file == null ? current() : load(file);
+    }
+
+    /** Re-reads the file and swaps the new table in; false if it could not be loaded. */
+    boolean reload() {
+        if (file == null) {
+            return false;
+        }
+        long started = System.nanoTime();
+        try {
+            Table loaded = load(file);
+            table.set(loaded);
+            System.out.printf("🔄 Reloaded %d commands from %s in %.1f ms%n",
+                loaded.commands, file, (System.nanoTime() - started) / 1e6);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("⚠️  Keeping previous commands; " + file + " has an error: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /** Starts a daemon thread that reloads the table whenever the file changes. */
+    synchronized void watch() {
+        if (file == null || watcher != null) {
+            return;
+        }
+        watcher = new Thread(this::watchLoop, "command-registry-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /** Stops watching the file; the current table stays in use. */
+    synchronized void close() {
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+    }
+
+    private void watchLoop() {
+        Path directory = file.toAbsolutePath().getParent();
+        Path name = file.getFileName();
+        try (WatchService watchService = directory.getFileSystem().newWatchService()) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= name.equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    // Editors often write a file in several steps; wait for it to settle
+                    Thread.sleep(RELOAD_SETTLE_MILLIS);
+                    drain(watchService);
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        } catch (IOException e) {
+            System.err.println("⚠️  Not watching " + file + " for changes: " + e.getMessage());
+        }
+    }
+
+    private static void drain(WatchService watchService) {
+        WatchKey pending;
+        while ((pending = watchService.poll()) != null) {
+            pending.pollEvents();
+            pending.reset();
+        }
+    }
+
+    static Table load(Path path) throws IOException {
+        try (Reader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(in, path.toString());
+        }
+    }
+
+    static Table parse(Reader in, String source) throws IOException {
+        List<String> names = new ArrayList<>();
+        // Properties forgets order, and order is priority: record names as they are read
+        Properties properties = new Properties() {
+            @Override
+            public synchronized Object put(Object key, Object value) {
+                String name = commandName((String) key);
+                if (!names.contains(name)) {
+                    names.add(name);
+                }
+                return super.put(key, value);
+            }
+        };
+        properties.load(in);
+        return parse(properties, names, source);
+    }
+
+    private static Table parse(Properties properties, List<String> names, String source) {
+        IntentMatcher.Builder<CommandProcessor.CommandHandler> intents = IntentMatcher.<CommandProcessor.CommandHandler>builder()
+            .fuzzyConfidence(Double.parseDouble(System.getProperty("assistant.fuzzy.minConfidence",
+                String.valueOf(IntentMatcher.DEFAULT_FUZZY_CONFIDENCE))));
+        Set<String> responses = new LinkedHashSet<>();
+        Set<String> speculative = new HashSet<>();
+
+        for (String name : names) {
+            String handlerName = properties.getProperty(name + ".handler");
+            String launch = properties.getProperty(name + ".launch");
+            String say = properties.getProperty(name + ".say");
+            int actions = (handlerName != null ? 1 : 0) + (launch != null ? 1 : 0) + (say != null ? 1 : 0);
+            if (actions != 1) {
+                throw new IllegalArgumentException(name + ": needs exactly one of .handler, .launch or .say");
+            }
+
+            CommandProcessor.CommandHandler handler;
+            if (handlerName != null) {
+                handler = HANDLERS.get(handlerName.trim());
+                if (handler == null) {
+                    throw new IllegalArgumentException(name + ": unknown handler '" + handlerName.trim() + "'");
+                }
+            } else if (launch != null) {
+                String message = properties.getProperty(name + ".message", "Opening " + name);
+                String command = launch.trim();
+                responses.add(message);
+                handler = (p, c) -> p.executeCommand(message, command);
+            } else {
+                responses.add(say);
+                handler = (p, c) -> p.respondWithSpeech(say);
+            }
+
+            // Fixed replies are always safe to render early; handlers have to opt in
+            if (Boolean.parseBoolean(properties.getProperty(name + ".speculate", String.valueOf(handlerName == null)).trim())) {
+                speculative.add(name);
+            }
+
+            List<String> triggers = phrases(properties.getProperty(name + ".triggers"));
+            List<String> exactly = phrases(properties.getProperty(name + ".exactly"));
+            if (triggers.isEmpty() && exactly.isEmpty()) {
+                throw new IllegalArgumentException(name + ": no .triggers or .exactly phrases");
+            }
+            IntentMatcher.Rule<CommandProcessor.CommandHandler> rule = intents.add(name, handler);
+            rule.anyOf(triggers.toArray(new String[0]));
+            rule.orExactly(exactly.toArray(new String[0]));
+            rule.unless(phrases(properties.getProperty(name + ".unless")).toArray(new String[0]));
+            List<String> also = phrases(properties.getProperty(name + ".also"));
+            if (!also.isEmpty()) {
+                rule.alsoOneOf(also.toArray(new String[0]));
+            }
+        }
+        return new Table(intents.build(), new ArrayList<>(responses), speculative, names.size(), source);
+    }
+
+    // "calculator.triggers" -> "calculator"
+    private static String commandName(String key) {
+        int dot = key.lastIndexOf('.');
+        if (dot <= 0) {
+            throw new IllegalArgumentException("Expected <name>.<field>, got '" + key + "'");
+        }
+        return key.substring(0, dot);
+    }
+
+    /** Comma-separated, lower-cased phrases; a "quoted" phrase keeps its spaces. */
+    static List<String> phrases(String value) {
+        List<String> phrases = new ArrayList<>();
+        if (value == null) {
+            return phrases;
+        }
+        for (String part : value.split(",")) {
+            String phrase = part.trim();
+            if (phrase.length() >= 2 && phrase.startsWith("\"") && phrase.endsWith("\"")) {
+                phrase = phrase.substring(1, phrase.length() - 1);
+            }
+            if (!phrase.isEmpty()) {
+                phrases.add(phrase.toLowerCase(Locale.ROOT));
+            }
+        }
+        return phrases;
+    }
+}
@@ -0,0 +1,24 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/** What CommandProcessor did with one command. */
+class CommandResult {
+    final String command;
+    String intent;
+    // Below 1 when the intent was found by fuzzy matching
+    double confidence = 1.0;
+    final List<String> responses = new ArrayList<>();
+    final List<String> launches = new ArrayList<>();
+    boolean exit;
+    long matchNanos;
+    long latencyNanos;
+
+    CommandResult(String command) {
+        this.command = command;
+    }
+
+    /** All spoken responses joined into one string. */
+    String responseText() {
+        return String.join(" ", responses);
+    }
+}
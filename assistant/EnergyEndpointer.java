@@ -0,0 +1,89 @@
+/**
+ * Energy-based voice activity detector.
+ *
+ * Each 16-bit little-endian mono frame is reduced to its energy in dB and
+ * compared against a slowly adapting noise floor. Speech starts after a few
+ * loud frames in a row and ends after a run of quiet frames (the hangover),
+ * so an utterance is reported as soon as the speaker stops.
+ */
+class EnergyEndpointer {
+
+    /** Receives speech boundaries, in frame sequence numbers. */
+    interface Listener {
+        void onSpeechStart(long startFrame);
+
+        /** endFrame is exclusive. */
+        void onSpeechEnd(long startFrame, long endFrame);
+    }
+
+    private static final double START_MARGIN_DB = 10.0;
+    private static final double END_MARGIN_DB = 6.0;
+    private static final double MIN_SPEECH_DB = 35.0;
+    private static final double FLOOR_ADAPT = 0.05;
+    private static final int START_FRAMES = 3;
+    private static final int HANGOVER_FRAMES = 25;
+    private static final int PRE_ROLL_FRAMES = 10;
+
+    private final Listener listener;
+    private double noiseFloorDb = MIN_SPEECH_DB - START_MARGIN_DB;
+    private boolean inSpeech;
+    private int loudRun;
+    private int quietRun;
+    private long speechStart;
+    private long frame;
+
+    EnergyEndpointer(Listener listener) {
+        this.listener = listener;
+    }
+
+    boolean inSpeech() {
+        return inSpeech;
+    }
+
+    /** Feeds the next frame of 16-bit little-endian samples. */
+    void process(byte[] pcm, int offset, int length) {
+        double energyDb = energyDb(pcm, offset, length);
+        long current = frame++;
+
+        if (!inSpeech) {
+            if (energyDb > Math.max(MIN_SPEECH_DB, noiseFloorDb + START_MARGIN_DB)) {
+                if (++loudRun >= START_FRAMES) {
+                    inSpeech = true;
+                    quietRun = 0;
+                    speechStart = Math.max(0, current - START_FRAMES + 1 - PRE_ROLL_FRAMES);
+                    listener.onSpeechStart(speechStart);
+                }
+            } else {
+                loudRun = 0;
+                noiseFloorDb += FLOOR_ADAPT * (energyDb - noiseFloorDb);
+            }
+        } else if (energyDb < Math.max(MIN_SPEECH_DB, noiseFloorDb + END_MARGIN_DB)) {
+            if (++quietRun >= HANGOVER_FRAMES) {
+                inSpeech = false;
+                loudRun = 0;
+                listener.onSpeechEnd(speechStart, current + 1);
+            }
+        } else {
+            quietRun = 0;
+        }
+    }
+
+    /** Ends an utterance still in progress, e.g. at the end of a file. */
+    void flush() {
+        if (inSpeech) {
+            inSpeech = false;
+            listener.onSpeechEnd(speechStart, frame);
+        }
+    }
+
+    static double energyDb(byte[] pcm, int offset, int length) {
+        long sum = 0;
+        int samples = length / 2;
+        for (int i = 0; i < samples; i++) {
+            int sample = (short) ((pcm[offset + 2 * i] & 0xff) | (pcm[offset + 2 * i + 1] << 8));
+            sum += (long) sample * sample;
+        }
+        double meanSquare = samples == 0 ? 0 : (double) sum / samples;
+        return 10 * Math.log10(meanSquare + 1);
+    }
+}
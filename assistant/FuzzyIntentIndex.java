@@ -0,0 +1,257 @@
+import java.util.*;
+
+/**
+ * Approximate trigger matching for commands the exact matcher rejects,
+ * typically recognizer slips such as "open note pad" or "calculater".
+ *
+ * Phrases and commands are compared with spaces and punctuation removed,
+ * so word splits cost nothing. A match must still cover whole words of the
+ * command: letters of a word it starts or ends inside count as edits, so
+ * "calculater" is closer to "calculator" than to "calculate". Phrases
+ * shorter than MIN_PHRASE_CHARS are not indexed: one edit in "open x" or
+ * "gmail" already matches too much.
+ *
+ * A trigram index picks candidate phrases that share enough trigrams with
+ * the command (by the q-gram lemma, a phrase occurring with k edits shares
+ * at least len - 2 - 3k of them); only the best MAX_CANDIDATES are then
+ * scored with an approximate substring edit distance. Lookup cost therefore depends on the command
+ * length and the candidate cap, not on the size of the phrase table.
+ */
+class FuzzyIntentIndex<H> {
+    static final int MIN_PHRASE_CHARS = 6;
+    static final int MAX_CANDIDATES = 32;
+    // Trigrams in more than this share of phrases ("ope", "pen") are too common to pick candidates
+    private static final double STOP_GRAM_SHARE = 0.05;
+    private static final int MIN_STOP_GRAM_PHRASES = 64;
+
+    /** One indexed trigger phrase. */
+    private static final class Entry<H> {
+        final IntentMatcher.Rule<H> rule;
+        final int priority;
+        final String phrase;
+        final String key;
+        // Distinct trigrams of key that are in the index, i.e. not stop-grams
+        int trigrams;
+
+        Entry(IntentMatcher.Rule<H> rule, int priority, String phrase, String key) {
+            this.rule = rule;
+            this.priority = priority;
+            this.phrase = phrase;
+            this.key = key;
+        }
+    }
+
+    private final List<Entry<H>> entries = new ArrayList<>();
+    private final Map<Long, int[]> postings = new HashMap<>();
+    private final double minConfidence;
+    // Per-thread counters, so a lookup allocates nothing proportional to the table size
+    private final ThreadLocal<int[]> sharedCounts;
+    private final ThreadLocal<int[]> touchedIds;
+
+    /**
+     * Indexes the anyOf and orExactly phrases of every rule. Rules with
+     * alsoOneOf groups are left out, since one fuzzy phrase cannot satisfy
+     * them.
+     */
+    FuzzyIntentIndex(List<IntentMatcher.Rule<H>> rules, double minConfidence) {
+        this.minConfidence = minConfidence;
+        Map<Long, List<Integer>> building = new HashMap<>();
+        for (int priority = 0; priority < rules.size(); priority++) {
+            IntentMatcher.Rule<H> rule = rules.get(priority);
+            if (!rule.allOf.isEmpty()) {
+                continue;
+            }
+            Set<String> phrases = new LinkedHashSet<>(rule.anyOf);
+            phrases.addAll(rule.exactly);
+            for (String phrase : phrases) {
+                String key = normalize(phrase);
+                if (key.length() < MIN_PHRASE_CHARS) {
+                    continue;
+                }
+                int id = entries.size();
+                entries.add(new Entry<>(rule, priority, phrase, key));
+                for (long trigram : distinctTrigrams(key)) {
+                    building.computeIfAbsent(trigram, t -> new ArrayList<>()).add(id);
+                }
+            }
+        }
+        int stopGram = Math.max(MIN_STOP_GRAM_PHRASES, (int) (entries.size() * STOP_GRAM_SHARE));
+        building.forEach((trigram, ids) -> {
+            if (ids.size() <= stopGram) {
+                postings.put(trigram, ids.stream().mapToInt(Integer::intValue).toArray());
+                for (int id : ids) {
+                    entries.get(id).trigrams++;
+                }
+            }
+        });
+        sharedCounts = ThreadLocal.withInitial(() -> new int[entries.size()]);
+        touchedIds = ThreadLocal.withInitial(() -> new int[entries.size()]);
+    }
+
+    /**
+     * Best approximate match with confidence (1 - edits / phrase length) of
+     * at least minConfidence, or null. Ties go to the longer phrase, then
+     * to the higher-priority rule.
+     */
+    IntentMatcher.Match<H> match(String command) {
+        String key = normalize(command);
+        if (key.length() < MIN_PHRASE_CHARS - maxEdits(MIN_PHRASE_CHARS)) {
+            return null;
+        }
+        boolean[] boundaries = wordBoundaries(command, key.length());
+
+        int[] shared = sharedCounts.get();
+        int[] touched = touchedIds.get();
+        int touchedCount = 0;
+        for (long trigram : distinctTrigrams(key)) {
+            int[] ids = postings.get(trigram);
+            if (ids == null) {
+                continue;
+            }
+            for (int id : ids) {
+                if (shared[id]++ == 0) {
+                    touched[touchedCount++] = id;
+                }
+            }
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int t = 0; t < touchedCount; t++) {
+            int id = touched[t];
+            Entry<H> entry = entries.get(id);
+            if (shared[id] >= Math.max(1, entry.trigrams - 3 * maxEdits(entry.key.length()))) {
+                candidates.add(id);
+            }
+        }
+        candidates.sort((a, b) -> Integer.compare(shared[b], shared[a]));
+        for (int t = 0; t < touchedCount; t++) {
+            shared[touched[t]] = 0;
+        }
+
+        Entry<H> best = null;
+        double bestConfidence = 0;
+        for (int c = 0; c < Math.min(MAX_CANDIDATES, candidates.size()); c++) {
+            Entry<H> entry = entries.get(candidates.get(c));
+            int edits = substringDistance(entry.key, key, boundaries, maxEdits(entry.key.length()));
+            if (edits < 0) {
+                continue;
+            }
+            double confidence = 1 - (double) edits / entry.key.length();
+            if (confidence < minConfidence || vetoed(entry.rule, command)) {
+                continue;
+            }
+            if (best == null || confidence > bestConfidence
+                    || (confidence == bestConfidence && (entry.key.length() > best.key.length()
+                        || (entry.key.length() == best.key.length() && entry.priority < best.priority)))) {
+                best = entry;
+                bestConfidence = confidence;
+            }
+        }
+        return best == null ? null : new IntentMatcher.Match<>(best.rule.name, best.rule.handler, bestConfidence, best.phrase);
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private int maxEdits(int phraseLength) {
+        return (int) Math.floor(phraseLength * (1 - minConfidence) + 1e-9);
+    }
+
+    private static boolean vetoed(IntentMatcher.Rule<?> rule, String command) {
+        for (String phrase : rule.noneOf) {
+            if (IntentMatcher.containsWords(command, phrase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Lower-case letters and digits only
+    static String normalize(String text) {
+        StringBuilder key = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            if (Character.isLetterOrDigit(c)) {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Which positions of normalize(text), 0 to keyLength inclusive, fall
+     * between two words of text, i.e. where a match may start or end.
+     */
+    static boolean[] wordBoundaries(String text, int keyLength) {
+        boolean[] boundaries = new boolean[keyLength + 1];
+        boundaries[0] = true;
+        boundaries[keyLength] = true;
+        int position = 0;
+        boolean separated = false;
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isLetterOrDigit(Character.toLowerCase(text.charAt(i)))) {
+                separated = true;
+                continue;
+            }
+            if (separated) {
+                boundaries[position] = true;
+                separated = false;
+            }
+            position++;
+        }
+        return boundaries;
+    }
+
+    private static Set<Long> distinctTrigrams(String key) {
+        Set<Long> trigrams = new HashSet<>();
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            trigrams.add(((long) key.charAt(i) << 32) | ((long) key.charAt(i + 1) << 16) | key.charAt(i + 2));
+        }
+        return trigrams;
+    }
+
+    /**
+     * Fewest edits (insertions, deletions, substitutions and adjacent
+     * transpositions) turning pattern into some run of whole words of text -
+     * Sellers' algorithm with the optimal-string-alignment rule - or -1 if
+     * that is more than maxEdits. An alignment may start or end inside a
+     * word, but the rest of that word is then charged as deletions.
+     */
+    static int substringDistance(String pattern, String text, boolean[] boundaries, int maxEdits) {
+        int m = pattern.length();
+        int n = text.length();
+        // Letters from each position to the end of its word
+        int[] toWordEnd = new int[n + 1];
+        for (int j = n - 1; j >= 0; j--) {
+            toWordEnd[j] = boundaries[j] ? 0 : toWordEnd[j + 1] + 1;
+        }
+        int[] beforePrevious = new int[m + 1];
+        int[] previous = new int[m + 1];
+        int[] current = new int[m + 1];
+        for (int i = 0; i <= m; i++) {
+            previous[i] = i;
+        }
+        int best = previous[m] + toWordEnd[0];
+        for (int j = 1; j <= n; j++) {
+            char t = text.charAt(j - 1);
+            // Starting here drops the letters since the word began
+            current[0] = boundaries[j] ? 0 : previous[0] + 1;
+            for (int i = 1; i <= m; i++) {
+                char p = pattern.charAt(i - 1);
+                int cost = previous[i - 1] + (p == t ? 0 : 1);
+                cost = Math.min(cost, Math.min(previous[i], current[i - 1]) + 1);
+                if (i > 1 && j > 1 && p == text.charAt(j - 2) && pattern.charAt(i - 2) == t) {
+                    cost = Math.min(cost, beforePrevious[i - 2] + 1);
+                }
+                current[i] = cost;
+            }
+            best = Math.min(best, current[m] + toWordEnd[j]);
+            int[] recycled = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = recycled;
+        }
+        return best <= maxEdits ? best : -1;
+    }
+}
@@ -0,0 +1,321 @@
+import java.util.*;
+
+/**
+ * Compiled intent index for CommandProcessor.
+ *
+ * All trigger phrases are compiled once into an Aho-Corasick automaton, so a
+ * command is scanned a single time no matter how many intents exist. Each
+ * intent keeps the priority of its position in the old if/else ladder, and the
+ * lowest satisfied priority wins, which preserves first-match behaviour.
+ * Phrases match whole words only, so "calculate" is not found in
+ * "calculater"; a phrase that begins or ends with a space or punctuation
+ * is not checked on that side.
+ */
+class IntentMatcher<H> {
+
+    /** One intent: when it fires and what handles it. */
+    static final class Rule<H> {
+        final String name;
+        final H handler;
+        final List<String> anyOf = new ArrayList<>();
+        final List<List<String>> allOf = new ArrayList<>();
+        final List<String> noneOf = new ArrayList<>();
+        final List<String> exactly = new ArrayList<>();
+
+        Rule(String name, H handler) {
+            this.name = name;
+            this.handler = handler;
+        }
+
+        /** Fires when the command contains any of these phrases. */
+        Rule<H> anyOf(String... phrases) {
+            anyOf.addAll(Arrays.asList(phrases));
+            return this;
+        }
+
+        /** Additionally requires one of these phrases (may be called repeatedly). */
+        Rule<H> alsoOneOf(String... phrases) {
+            allOf.add(Arrays.asList(phrases));
+            return this;
+        }
+
+        /** Vetoes the rule when the command contains any of these phrases. */
+        Rule<H> unless(String... phrases) {
+            noneOf.addAll(Arrays.asList(phrases));
+            return this;
+        }
+
+        /** Fires when the whole command equals one of these phrases. */
+        Rule<H> orExactly(String... phrases) {
+            exactly.addAll(Arrays.asList(phrases));
+            return this;
+        }
+    }
+
+    /**
+     * Result of a lookup: the winning intent and its handler. Fuzzy matches
+     * also carry the trigger phrase they resembled and a confidence below 1.
+     */
+    static final class Match<H> {
+        final String intent;
+        final H handler;
+        final double confidence;
+        final String phrase;
+
+        Match(String intent, H handler) {
+            this(intent, handler, 1.0, null);
+        }
+
+        Match(String intent, H handler, double confidence, String phrase) {
+            this.intent = intent;
+            this.handler = handler;
+            this.confidence = confidence;
+            this.phrase = phrase;
+        }
+    }
+
+    static final double DEFAULT_FUZZY_CONFIDENCE = 0.8;
+
+    // Compiled rule: phrase ids instead of strings
+    private static final class CompiledRule<H> {
+        Rule<H> rule;
+        int[] anyOf;
+        int[][] allOf;
+        int[] noneOf;
+    }
+
+    private final List<CompiledRule<H>> rules = new ArrayList<>();
+    private final Map<String, Integer> exact = new HashMap<>();
+    private final List<String> phrases = new ArrayList<>();
+    private final FuzzyIntentIndex<H> fuzzy;
+
+    // Automaton: goto function as per-state char maps, failure links, outputs
+    private final List<Map<Character, Integer>> transitions = new ArrayList<>();
+    private int[] failure;
+    private int[][] outputs;
+    // For each phrase, the rules (by priority) that use it as a trigger
+    private int[][] triggeredRules;
+
+    private IntentMatcher(List<Rule<H>> ruleList, double fuzzyConfidence) {
+        transitions.add(new HashMap<>());
+        List<List<Integer>> stateOutputs = new ArrayList<>();
+        stateOutputs.add(new ArrayList<>());
+        Map<String, Integer> phraseIds = new HashMap<>();
+        List<List<Integer>> triggers = new ArrayList<>();
+
+        for (int priority = 0; priority < ruleList.size(); priority++) {
+            Rule<H> rule = ruleList.get(priority);
+            CompiledRule<H> compiled = new CompiledRule<>();
+            compiled.rule = rule;
+            compiled.anyOf = ids(rule.anyOf, phraseIds, stateOutputs, triggers);
+            compiled.allOf = new int[rule.allOf.size()][];
+            for (int i = 0; i < rule.allOf.size(); i++) {
+                compiled.allOf[i] = ids(rule.allOf.get(i), phraseIds, stateOutputs, triggers);
+            }
+            compiled.noneOf = ids(rule.noneOf, phraseIds, stateOutputs, triggers);
+            for (int id : compiled.anyOf) {
+                triggers.get(id).add(priority);
+            }
+            for (String phrase : rule.exactly) {
+                exact.putIfAbsent(phrase, priority);
+            }
+            rules.add(compiled);
+        }
+
+        triggeredRules = new int[triggers.size()][];
+        for (int i = 0; i < triggers.size(); i++) {
+            triggeredRules[i] = triggers.get(i).stream().mapToInt(Integer::intValue).toArray();
+        }
+        buildFailureLinks(stateOutputs);
+        fuzzy = new FuzzyIntentIndex<>(ruleList, fuzzyConfidence);
+    }
+
+    static <H> Builder<H> builder() {
+        return new Builder<>();
+    }
+
+    static final class Builder<H> {
+        private final List<Rule<H>> rules = new ArrayList<>();
+        private double fuzzyConfidence = DEFAULT_FUZZY_CONFIDENCE;
+
+        /** Adds a rule; rules added first win over later ones. */
+        Rule<H> add(String name, H handler) {
+            Rule<H> rule = new Rule<>(name, handler);
+            rules.add(rule);
+            return rule;
+        }
+
+        /** Lowest confidence matchFuzzy() accepts. */
+        Builder<H> fuzzyConfidence(double minConfidence) {
+            this.fuzzyConfidence = minConfidence;
+            return this;
+        }
+
+        IntentMatcher<H> build() {
+            return new IntentMatcher<>(rules, fuzzyConfidence);
+        }
+    }
+
+    /**
+     * Finds the highest-priority intent for a (lower-cased) command in one
+     * pass over its characters. Returns null when nothing matches.
+     */
+    Match<H> match(String command) {
+        BitSet seen = scan(command);
+        int best = exact.getOrDefault(command, Integer.MAX_VALUE);
+
+        for (int phrase = seen.nextSetBit(0); phrase >= 0; phrase = seen.nextSetBit(phrase + 1)) {
+            for (int priority : triggeredRules[phrase]) {
+                if (priority >= best) {
+                    break;
+                }
+                if (satisfied(rules.get(priority), seen)) {
+                    best = priority;
+                    break;
+                }
+            }
+        }
+
+        if (best == Integer.MAX_VALUE) {
+            return null;
+        }
+        Rule<H> rule = rules.get(best).rule;
+        return new Match<>(rule.name, rule.handler);
+    }
+
+    /**
+     * Approximate lookup for when match() found nothing, e.g. "open note
+     * pad" for "open notepad". Returns null when no trigger is close enough.
+     */
+    Match<H> matchFuzzy(String command) {
+        return fuzzy.match(command);
+    }
+
+    /** All distinct trigger phrases in the index, in first-seen order. */
+    List<String> phrases() {
+        return Collections.unmodifiableList(phrases);
+    }
+
+    private BitSet scan(String text) {
+        BitSet seen = new BitSet(phrases.size());
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            Integer next;
+            while ((next = transitions.get(state).get(c)) == null && state != 0) {
+                state = failure[state];
+            }
+            state = next == null ? 0 : next;
+            for (int phrase : outputs[state]) {
+                if (!seen.get(phrase) && wholeWords(phrases.get(phrase), text, i - phrases.get(phrase).length() + 1)) {
+                    seen.set(phrase);
+                }
+            }
+        }
+        return seen;
+    }
+
+    /** Whether text contains phrase as whole words, the way match() looks for triggers. */
+    static boolean containsWords(String text, String phrase) {
+        for (int start = text.indexOf(phrase); start >= 0; start = text.indexOf(phrase, start + 1)) {
+            if (wholeWords(phrase, text, start)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // phrase occurs in text at start without running into a neighbouring word
+    private static boolean wholeWords(String phrase, String text, int start) {
+        int end = start + phrase.length();
+        if (phrase.isEmpty()) {
+            return true;
+        }
+        if (start > 0 && Character.isLetterOrDigit(phrase.charAt(0))
+                && Character.isLetterOrDigit(text.charAt(start - 1))) {
+            return false;
+        }
+        return end >= text.length() || !Character.isLetterOrDigit(phrase.charAt(phrase.length() - 1))
+            || !Character.isLetterOrDigit(text.charAt(end));
+    }
+
+    private boolean satisfied(CompiledRule<H> rule, BitSet seen) {
+        for (int id : rule.noneOf) {
+            if (seen.get(id)) {
+                return false;
+            }
+        }
+        for (int[] group : rule.allOf) {
+            boolean any = false;
+            for (int id : group) {
+                if (seen.get(id)) {
+                    any = true;
+                    break;
+                }
+            }
+            if (!any) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int[] ids(List<String> list, Map<String, Integer> phraseIds,
+                      List<List<Integer>> stateOutputs, List<List<Integer>> triggers) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+            String phrase = list.get(i);
+            Integer id = phraseIds.get(phrase);
+            if (id == null) {
+                id = phrases.size();
+                phrases.add(phrase);
+                phraseIds.put(phrase, id);
+                triggers.add(new ArrayList<>());
+                insert(phrase, id, stateOutputs);
+            }
+            result[i] = id;
+        }
+        return result;
+    }
+
+    private void insert(String phrase, int id, List<List<Integer>> stateOutputs) {
+        int state = 0;
+        for (int i = 0; i < phrase.length(); i++) {
+            char c = phrase.charAt(i);
+            Integer next = transitions.get(state).get(c);
+            if (next == null) {
+                next = transitions.size();
+                transitions.add(new HashMap<>());
+                stateOutputs.add(new ArrayList<>());
+                transitions.get(state).put(c, next);
+            }
+            state = next;
+        }
+        stateOutputs.get(state).add(id);
+    }
+
+    private void buildFailureLinks(List<List<Integer>> stateOutputs) {
+        failure = new int[transitions.size()];
+        ArrayDeque<Integer> queue = new ArrayDeque<>(transitions.get(0).values());
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (Map.Entry<Character, Integer> edge : transitions.get(state).entrySet()) {
+                int child = edge.getValue();
+                int fallback = failure[state];
+                Integer target;
+                while ((target = transitions.get(fallback).get(edge.getKey())) == null && fallback != 0) {
+                    fallback = failure[fallback];
+                }
+                failure[child] = (target == null || target == child) ? 0 : target;
+                stateOutputs.get(child).addAll(stateOutputs.get(failure[child]));
+                queue.add(child);
+            }
+        }
+
+        outputs = new int[stateOutputs.size()][];
+        for (int i = 0; i < outputs.length; i++) {
+            outputs[i] = stateOutputs.get(i).stream().distinct().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds a CommandJournal back through headless CommandProcessors, so
+ * nothing is spoken or launched, to reproduce recorded load or check a
+ * change against real traffic.
+ *
+ * Commands are issued at their recorded spacing divided by --speed (0 for
+ * no pauses), on --threads workers so overlapping server traffic stays
+ * overlapped. Idle gaps longer than MAX_GAP_MILLIS are shortened to it.
+ * At the end the replayed latency is compared with the recorded one, and
+ * every command that now matches a different intent is listed - replay a
+ * journal after editing commands.properties to see what the edit changes.
+ */
+class JournalReplay {
+    private static final long MAX_GAP_MILLIS = 10_000;
+    private static final int MAX_LISTED_CHANGES = 20;
+
+    private final double speed;
+    private final int threads;
+    private final LatencyHistogram recorded = new LatencyHistogram();
+    private final LatencyHistogram replayed = new LatencyHistogram();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    // "'command': old -> new" to how often it happened, in order of first occurrence
+    private final Map<String, Long> changes = new LinkedHashMap<>();
+    private final AtomicLong changed = new AtomicLong();
+    private final ThreadLocal<CommandProcessor> processors = ThreadLocal.withInitial(CommandProcessor::headless);
+
+    JournalReplay(double speed, int threads) {
+        this.speed = speed;
+        this.threads = threads;
+    }
+
+    /** Main --replay &lt;journal dir or segment&gt; [--speed N] [--threads N] */
+    static void run(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: Main --replay <journal dir or segment> [--speed N] [--threads N]");
+            return;
+        }
+        double speed = 1;
+        int threads = 1;
+        for (int a = 2; a + 1 < args.length; a += 2) {
+            if (args[a].equals("--speed")) {
+                speed = Double.parseDouble(args[a + 1]);
+            } else if (args[a].equals("--threads")) {
+                threads = Integer.parseInt(args[a + 1]);
+            }
+        }
+        Path journal = Paths.get(args[1]);
+        List<CommandJournal.Entry> entries = new ArrayList<>();
+        CommandJournal.read(journal, entries::add);
+        System.out.printf(Locale.ROOT, "⏯️  Replaying %d commands from %s at %s on %d threads%n",
+            entries.size(), journal, speed > 0 ? speed + "x" : "full speed", threads);
+
+        JournalReplay replay = new JournalReplay(speed, threads);
+        long elapsed = replay.execute(entries);
+        replay.printReport(entries.size(), elapsed);
+    }
+
+    long execute(List<CommandJournal.Entry> entries) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, AppLauncher.daemonThreads("journal-replay"));
+        // Load the command table before the clock starts, or the first command lags everything behind it
+        CommandProcessor.intents();
+        long started = System.nanoTime();
+        long due = started;
+        for (int i = 0; i < entries.size(); i++) {
+            CommandJournal.Entry entry = entries.get(i);
+            if (i > 0 && speed > 0) {
+                long gap = Math.min(MAX_GAP_MILLIS, Math.max(0, entry.epochMillis - entries.get(i - 1).epochMillis));
+                due += (long) (TimeUnit.MILLISECONDS.toNanos(gap) / speed);
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+            long scheduled = speed > 0 ? due : System.nanoTime();
+            workers.execute(() -> replay(entry, scheduled));
+        }
+        workers.shutdown();
+        workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        return System.nanoTime() - started;
+    }
+
+    private void replay(CommandJournal.Entry entry, long scheduled) {
+        lag.record(Math.max(0, System.nanoTime() - scheduled));
+        CommandResult result = processors.get().processCommand(entry.command);
+        recorded.record(entry.processNanos);
+        replayed.record(result.latencyNanos);
+        if (!entry.intent.equals(result.intent)) {
+            changed.incrementAndGet();
+            synchronized (changes) {
+                changes.merge(String.format("'%s': %s -> %s", entry.command, entry.intent, result.intent), 1L, Long::sum);
+            }
+        }
+    }
+
+    private void printReport(int count, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "📊 %d commands in %.2f s (%.0f commands/s)%n", count, seconds, count / seconds);
+        if (speed > 0) {
+            // How far behind the recorded pace the workers fell
+            System.out.printf(Locale.ROOT, "   schedule lag ms: p50 %.3f, p99 %.3f%n",
+                PipelineMetrics.millis(lag.percentileNanos(50)), PipelineMetrics.millis(lag.percentileNanos(99)));
+        }
+        printLatency("recorded", recorded);
+        printLatency("replayed", replayed);
+        if (changed.get() == 0) {
+            System.out.println("✅ Every command matched its recorded intent");
+        } else {
+            System.out.println("⚠️  " + changed.get() + " commands now match a different intent:");
+            changes.entrySet().stream().limit(MAX_LISTED_CHANGES)
+                .forEach(change -> System.out.println("   " + change.getKey() + " (" + change.getValue() + "x)"));
+            if (changes.size() > MAX_LISTED_CHANGES) {
+                System.out.println("   ... and " + (changes.size() - MAX_LISTED_CHANGES) + " more");
+            }
+        }
+    }
+
+    private static void printLatency(String label, LatencyHistogram latency) {
+        System.out.printf(Locale.ROOT, "   %s latency ms: p50 %.3f, p90 %.3f, p99 %.3f, max %.3f%n", label,
+            PipelineMetrics.millis(latency.percentileNanos(50)), PipelineMetrics.millis(latency.percentileNanos(90)),
+            PipelineMetrics.millis(latency.percentileNanos(99)), PipelineMetrics.millis(latency.maxNanos()));
+    }
+}
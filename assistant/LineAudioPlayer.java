@@ -0,0 +1,516 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import javax.sound.sampled.*;
+
+import com.sun.speech.freetts.audio.AudioPlayer;
+
+/**
+ * FreeTTS audio player that keeps one output line open for the life of the
+ * process.
+ *
+ * FreeTTS's own players open a SourceDataLine at the start of every
+ * utterance and close it at the end, which puts device setup and buffer
+ * allocation in front of every reply. This one opens its sink once, at the
+ * first audio format, and only reopens it if the format changes. FreeTTS's
+ * sample arrays are written straight through in pieces of half the buffer,
+ * so a cancel takes effect within half a buffer and nothing is allocated
+ * per utterance.
+ *
+ * The buffer is -Dassistant.audio.bufferMillis long: smaller starts audio
+ * sooner but runs dry more easily. Running dry in the middle of an
+ * utterance counts as an underrun, both here and in PipelineMetrics.
+ *
+ * -Dassistant.audio.sink picks the output: "line" (default) for the sound
+ * card, "null" to discard audio at real-time speed as a sound card would,
+ * or "file" to append everything to the WAV named by
+ * -Dassistant.audio.file. Without a usable sound card, "line" falls back
+ * to "null".
+ */
+class LineAudioPlayer implements AudioPlayer {
+    static final int DEFAULT_BUFFER_MILLIS = 100;
+
+    /** Where the audio goes. */
+    interface Sink {
+        void open(AudioFormat format, int bufferBytes) throws LineUnavailableException, IOException;
+
+        /** Blocks while the output buffer is full. */
+        void write(byte[] data, int offset, int length) throws IOException;
+
+        /** True when everything written so far has already been played. */
+        boolean starved();
+
+        /** Blocks until everything written has been played. */
+        void drain();
+
+        /** Throws away audio not yet played. */
+        void flush();
+
+        default void setVolume(float volume) {
+        }
+
+        void close();
+    }
+
+    private Sink sink;
+    private final int bufferMillis;
+    private final Object pauseLock = new Object();
+    private AudioFormat format;
+    private AudioFormat openFormat;
+    private int chunkBytes;
+    private float volume = 1.0f;
+    private volatile boolean cancelled;
+    private volatile boolean paused;
+    private boolean wroteThisUtterance;
+    private long bytesSinceReset;
+    private long opens;
+    private long utterances;
+    private long underruns;
+    private long bytesWritten;
+
+    LineAudioPlayer(Sink sink, int bufferMillis) {
+        this.sink = sink;
+        this.bufferMillis = Math.max(1, bufferMillis);
+    }
+
+    /** Player for -Dassistant.audio.sink, .bufferMillis and .file. */
+    static LineAudioPlayer fromSystemProperties() {
+        int bufferMillis = Integer.getInteger("assistant.audio.bufferMillis", DEFAULT_BUFFER_MILLIS);
+        switch (System.getProperty("assistant.audio.sink", "line")) {
+            case "null":
+                return new LineAudioPlayer(new NullSink(), bufferMillis);
+            case "file":
+                return new LineAudioPlayer(new FileSink(Paths.get(System.getProperty("assistant.audio.file", "speech.wav"))),
+                    bufferMillis);
+            default:
+                return new LineAudioPlayer(new SpeakerSink(), bufferMillis);
+        }
+    }
+
+    long underruns() {
+        return underruns;
+    }
+
+    String stats() {
+        return String.format("%d utterances, %.1f s of audio, %d underruns, line opened %d times (%d ms buffer)",
+            utterances, format == null ? 0 : bytesWritten / (format.getFrameRate() * format.getFrameSize()),
+            underruns, opens, bufferMillis);
+    }
+
+    @Override
+    public synchronized void setAudioFormat(AudioFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public AudioFormat getAudioFormat() {
+        return format;
+    }
+
+    @Override
+    public synchronized void begin(int size) {
+        cancelled = false;
+        wroteThisUtterance = false;
+        utterances++;
+        if (format != null && (openFormat == null || !format.matches(openFormat))) {
+            openSink();
+        }
+    }
+
+    private void openSink() {
+        int frameSize = Math.max(1, format.getFrameSize());
+        int bufferBytes = (int) (format.getFrameRate() * frameSize * bufferMillis / 1000) / frameSize * frameSize;
+        bufferBytes = Math.max(frameSize, bufferBytes);
+        sink.close();
+        try {
+            sink.open(format, bufferBytes);
+        } catch (LineUnavailableException | IllegalArgumentException | SecurityException e) {
+            // No sound card (or none for this format): keep the timing, lose the sound
+            System.err.println("⚠️  No audio output line (" + e.getMessage() + "); speech will be silent");
+            NullSink silent = new NullSink();
+            silent.open(format, bufferBytes);
+            sink = silent;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audio output", e);
+        }
+        sink.setVolume(volume);
+        openFormat = format;
+        chunkBytes = Math.max(frameSize, bufferBytes / 2 / frameSize * frameSize);
+        opens++;
+    }
+
+    @Override
+    public boolean write(byte[] audioData) {
+        return write(audioData, 0, audioData.length);
+    }
+
+    @Override
+    public boolean write(byte[] audioData, int offset, int length) {
+        if (openFormat == null) {
+            synchronized (this) {
+                if (openFormat == null && format != null) {
+                    openSink();
+                }
+            }
+            if (openFormat == null) {
+                // FreeTTS always sets the format first
+                return false;
+            }
+        }
+        int end = offset + length;
+        while (offset < end) {
+            if (!waitWhilePaused()) {
+                return false;
+            }
+            if (wroteThisUtterance && sink.starved()) {
+                underruns++;
+                PipelineMetrics.GLOBAL.countUnderrun();
+            }
+            int n = Math.min(chunkBytes, end - offset);
+            try {
+                sink.write(audioData, offset, n);
+            } catch (IOException e) {
+                System.err.println("❌ Audio output failed: " + e.getMessage());
+                return false;
+            }
+            wroteThisUtterance = true;
+            offset += n;
+            bytesWritten += n;
+            bytesSinceReset += n;
+        }
+        return !cancelled;
+    }
+
+    // False once cancelled
+    private boolean waitWhilePaused() {
+        synchronized (pauseLock) {
+            while (paused && !cancelled) {
+                try {
+                    pauseLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return !cancelled;
+    }
+
+    /** Waits for the utterance to finish playing; the line stays open for the next one. */
+    @Override
+    public boolean end() {
+        return drain();
+    }
+
+    @Override
+    public boolean drain() {
+        if (!cancelled && openFormat != null) {
+            sink.drain();
+        }
+        return !cancelled;
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        sink.flush();
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+    }
+
+    @Override
+    public void resume() {
+        synchronized (pauseLock) {
+            paused = false;
+            pauseLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void reset() {
+        cancelled = false;
+    }
+
+    @Override
+    public synchronized void close() {
+        sink.close();
+        openFormat = null;
+    }
+
+    @Override
+    public float getVolume() {
+        return volume;
+    }
+
+    @Override
+    public void setVolume(float volume) {
+        this.volume = volume;
+        sink.setVolume(volume);
+    }
+
+    /** Milliseconds of audio written since resetTime(). */
+    @Override
+    public long getTime() {
+        AudioFormat current = format;
+        return current == null ? 0 : (long) (bytesSinceReset * 1000 / (current.getFrameRate() * current.getFrameSize()));
+    }
+
+    @Override
+    public void resetTime() {
+        bytesSinceReset = 0;
+    }
+
+    @Override
+    public void startFirstSampleTimer() {
+    }
+
+    @Override
+    public void showMetrics() {
+        System.out.println("🔈 Audio output: " + stats());
+    }
+
+    /** The sound card, through one long-lived SourceDataLine. */
+    static final class SpeakerSink implements Sink {
+        private SourceDataLine line;
+
+        @Override
+        public void open(AudioFormat format, int bufferBytes) throws LineUnavailableException {
+            SourceDataLine opened = AudioSystem.getSourceDataLine(format);
+            opened.open(format, bufferBytes);
+            opened.start();
+            line = opened;
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            line.write(data, offset, length);
+        }
+
+        @Override
+        public boolean starved() {
+            return line.available() >= line.getBufferSize();
+        }
+
+        @Override
+        public void drain() {
+            line.drain();
+        }
+
+        @Override
+        public void flush() {
+            SourceDataLine current = line;
+            if (current != null) {
+                current.flush();
+            }
+        }
+
+        @Override
+        public void setVolume(float volume) {
+            SourceDataLine current = line;
+            if (current != null && current.isControlSupported(FloatControl.Type.MASTER_GAIN)) {
+                FloatControl gain = (FloatControl) current.getControl(FloatControl.Type.MASTER_GAIN);
+                float decibels = (float) (20 * Math.log10(Math.max(volume, 1e-4)));
+                gain.setValue(Math.max(gain.getMinimum(), Math.min(gain.getMaximum(), decibels)));
+            }
+        }
+
+        @Override
+        public void close() {
+            if (line != null) {
+                line.close();
+                line = null;
+            }
+        }
+    }
+
+    /**
+     * Discards audio but takes as long as a sound card with the same buffer
+     * would: writes block once a buffer's worth is pending, drain() waits
+     * for the rest, and a gap between writes longer than the buffer is an
+     * underrun.
+     */
+    static final class NullSink implements Sink {
+        private double bytesPerNano;
+        private long bufferNanos;
+        // When the audio written so far will have finished playing
+        private volatile long playedUntil;
+
+        @Override
+        public void open(AudioFormat format, int bufferBytes) {
+            bytesPerNano = format.getFrameRate() * format.getFrameSize() / 1e9;
+            bufferNanos = (long) (bufferBytes / bytesPerNano);
+            playedUntil = System.nanoTime();
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) {
+            long now = System.nanoTime();
+            long start = Math.max(playedUntil, now);
+            playedUntil = start + (long) (length / bytesPerNano);
+            sleepUntil(playedUntil - bufferNanos);
+        }
+
+        @Override
+        public boolean starved() {
+            return System.nanoTime() >= playedUntil;
+        }
+
+        @Override
+        public void drain() {
+            sleepUntil(playedUntil);
+        }
+
+        @Override
+        public void flush() {
+            playedUntil = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        private void sleepUntil(long deadline) {
+            long wait = deadline - System.nanoTime();
+            if (wait > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends all audio, as fast as it comes, to one WAV file whose header
+     * is brought up to date whenever an utterance finishes. A file already
+     * there is continued, across reopens and restarts, if it holds audio in
+     * the same format; otherwise it is started again.
+     */
+    static final class FileSink implements Sink {
+        private final Path file;
+        private FileChannel channel;
+        private AudioFormat format;
+        private ByteBuffer converted = ByteBuffer.allocate(8192);
+        // The start of a frame split across writes
+        private ByteBuffer partial;
+        private int dataBytes;
+
+        FileSink(Path file) {
+            this.file = file;
+        }
+
+        @Override
+        public void open(AudioFormat format, int bufferBytes) throws IOException {
+            this.format = format;
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+            partial = ByteBuffer.allocate(Math.max(1, format.getFrameSize()));
+            if (sameFormat()) {
+                int blockAlign = Math.max(1, format.getChannels() * format.getSampleSizeInBits() / 8);
+                dataBytes = (int) ((channel.size() - WavFiles.HEADER_BYTES) / blockAlign * blockAlign);
+            } else {
+                channel.truncate(0);
+                dataBytes = 0;
+            }
+            writeHeader();
+            channel.position(WavFiles.HEADER_BYTES + dataBytes);
+        }
+
+        // Whether the file already has a header this sink would write for format, sizes aside
+        private boolean sameFormat() throws IOException {
+            if (channel.size() < WavFiles.HEADER_BYTES) {
+                return false;
+            }
+            ByteBuffer existing = ByteBuffer.allocate(WavFiles.HEADER_BYTES);
+            while (existing.hasRemaining() && channel.read(existing, existing.position()) > 0) {
+                // Read the whole header
+            }
+            ByteBuffer expected = WavFiles.header(format, 0);
+            // RIFF size at 4 and data size at 40 differ; everything else must match
+            return !existing.hasRemaining()
+                && existing.slice(0, 4).equals(expected.slice(0, 4))
+                && existing.slice(8, 32).equals(expected.slice(8, 32));
+        }
+
+        @Override
+        public synchronized void write(byte[] data, int offset, int length) throws IOException {
+            if (converted.capacity() < length + partial.capacity()) {
+                converted = ByteBuffer.allocate(length + partial.capacity());
+            }
+            converted.clear();
+            ByteBuffer source = ByteBuffer.wrap(data, offset, length);
+            if (partial.position() > 0) {
+                // Complete the frame split across the previous write
+                while (partial.hasRemaining() && source.hasRemaining()) {
+                    partial.put(source.get());
+                }
+                if (!partial.hasRemaining()) {
+                    partial.flip();
+                    WavFiles.convert(format, partial, converted);
+                    partial.clear();
+                }
+            }
+            // Whole frames only, so the file never ends in the middle of one
+            int frames = source.remaining() / partial.capacity() * partial.capacity();
+            WavFiles.convert(format, source.slice(source.position(), frames), converted);
+            source.position(source.position() + frames);
+            partial.put(source);
+            converted.flip();
+            dataBytes += converted.remaining();
+            while (converted.hasRemaining()) {
+                channel.write(converted);
+            }
+        }
+
+        @Override
+        public boolean starved() {
+            return false;
+        }
+
+        @Override
+        public synchronized void drain() {
+            try {
+                writeHeader();
+            } catch (IOException e) {
+                System.err.println("❌ Could not update " + file + ": " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public synchronized void close() {
+            if (channel != null) {
+                drain();
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    System.err.println("❌ Could not close " + file + ": " + e.getMessage());
+                }
+                channel = null;
+            }
+        }
+
+        private void writeHeader() throws IOException {
+            ByteBuffer header = WavFiles.header(format, dataBytes);
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+        }
+    }
+}
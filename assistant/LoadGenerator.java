@@ -0,0 +1,123 @@
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Closed-loop load test for AssistantServer: each simulated client keeps
+ * one connection open and sends the next command as soon as the previous
+ * reply, audio included, has been read. Reports requests per second and
+ * the latency distribution across all clients.
+ */
+class LoadGenerator {
+    private static final Pattern AUDIO_BYTES = Pattern.compile("\"audioBytes\":(\\d+)");
+
+    private final int port;
+    private final int clients;
+    private final long durationNanos;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong audioBytes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    LoadGenerator(int port, int clients, long durationNanos) {
+        this.port = port;
+        this.clients = clients;
+        this.durationNanos = durationNanos;
+    }
+
+    /** Runs against a server already listening on port. */
+    static void run(int port, int clients, int seconds) throws Exception {
+        System.out.printf("🔥 Load test: %d clients for %d s against port %d%n", clients, seconds, port);
+        LoadGenerator generator = new LoadGenerator(port, clients, TimeUnit.SECONDS.toNanos(seconds));
+        long elapsed = generator.execute();
+        generator.printReport(elapsed);
+    }
+
+    long execute() throws Exception {
+        ExecutorService executor = AssistantServer.sessionExecutor("load-client");
+        long started = System.nanoTime();
+        long deadline = started + durationNanos;
+        List<Future<?>> running = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int offset = c;
+            running.add(executor.submit(() -> client(offset, deadline)));
+        }
+        for (Future<?> client : running) {
+            client.get();
+        }
+        executor.shutdown();
+        return System.nanoTime() - started;
+    }
+
+    private void client(int offset, long deadline) {
+        String[] corpus = AssistantBenchmark.COMMAND_CORPUS;
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+            for (int i = offset; System.nanoTime() < deadline; i++) {
+                long sent = System.nanoTime();
+                out.write(corpus[i % corpus.length]);
+                out.write('\n');
+                out.flush();
+                String header = readLine(in);
+                if (header == null) {
+                    errors.incrementAndGet();
+                    return;
+                }
+                Matcher m = AUDIO_BYTES.matcher(header);
+                long audio = m.find() ? Long.parseLong(m.group(1)) : 0;
+                skipFully(in, audio);
+                latency.record(System.nanoTime() - sent);
+                audioBytes.addAndGet(audio);
+            }
+        } catch (IOException e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                return null;
+            }
+            line.write(b);
+        }
+        return line.toString(StandardCharsets.UTF_8.name());
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Reply ended early");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    private void printReport(long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        long count = latency.count();
+        System.out.printf(Locale.ROOT, "📊 %d requests in %.2f s (%.0f requests/s), %d errors, %.1f MB of audio%n",
+            count, seconds, count / seconds, errors.get(), audioBytes.get() / 1e6);
+        System.out.printf(Locale.ROOT, "   latency ms: p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+            PipelineMetrics.millis(latency.percentileNanos(50)), PipelineMetrics.millis(latency.percentileNanos(90)),
+            PipelineMetrics.millis(latency.percentileNanos(99)), PipelineMetrics.millis(latency.percentileNanos(99.9)),
+            PipelineMetrics.millis(latency.maxNanos()));
+    }
+}
@@ -0,0 +1,485 @@
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.en.us.CMULexicon;
+import com.sun.speech.freetts.lexicon.LetterToSound;
+import com.sun.speech.freetts.lexicon.LetterToSoundImpl;
+import com.sun.speech.freetts.lexicon.Lexicon;
+
+/**
+ * The CMU lexicon served straight from a memory-mapped file.
+ *
+ * Allocating a FreeTTS voice normally parses cmulex_compiled.bin out of
+ * cmulex.jar into a HashMap of about 63,000 words, each with its own key
+ * string and phone array, and loads the letter-to-sound rules next to it.
+ * Main --compile-lexicon [file] turns the compiled lexicon and its addenda
+ * into one sorted binary file (compile.bat runs it). This lexicon maps that
+ * file read-only and binary-searches it on each lookup, so loading it costs
+ * a header read and the words stay in the page cache, where every voice in
+ * the process and every assistant process on the machine share them.
+ *
+ * Lookups follow LexiconImpl: the word with its part of speech ("0" when
+ * none is given), then with each other part of speech in the file, first
+ * in the addenda and then in the compiled words; letter-to-sound rules,
+ * loaded on the first unknown word, cover the rest. Addenda added at run
+ * time are kept on the heap and checked with the file's addenda.
+ *
+ * Used by every voice once the file exists; -Dassistant.lexicon picks
+ * another file and -Dassistant.lexicon=none keeps FreeTTS's own lexicon.
+ *
+ * File layout (big-endian): "CLEX", version, the parts of speech as a
+ * byte count and ASCII characters, the phones as a short count and
+ * byte-prefixed ASCII strings, then the addenda and the compiled words as
+ * two sections. A section is an entry count, the file offset of each entry
+ * and the entries, sorted by word and then part of speech. An entry is the
+ * UTF-8 word prefixed by its byte length, the part of speech, a phone count
+ * and one byte per phone indexing the phone table.
+ */
+class MappedLexicon implements Lexicon {
+    static final String DEFAULT_FILE = "cmulex.map";
+    private static final int MAGIC = 0x434C4558; // "CLEX"
+    private static final int VERSION = 1;
+    // The FreeTTS binary lexicon format
+    private static final int FREETTS_MAGIC = 0x00BABB1E;
+    private static final int FREETTS_VERSION = 1;
+    private static final String RESOURCES = "/com/sun/speech/freetts/en/us/";
+    private static final String COMPILED_RESOURCE = RESOURCES + "cmulex_compiled.bin";
+    private static final String ADDENDA_RESOURCE = RESOURCES + "cmulex_addenda.bin";
+    private static final String LTS_RESOURCE = RESOURCES + "cmulex_lts.bin";
+    // Marks an addendum removed at run time, hiding the file's entry
+    private static final String[] REMOVED = new String[0];
+
+    private static volatile MappedLexicon shared;
+    private static volatile boolean sharedResolved;
+
+    /** One sorted run of entries in the mapped file. */
+    private static final class Section {
+        final int count;
+        final int offsetsAt;
+
+        Section(int count, int offsetsAt) {
+            this.count = count;
+            this.offsetsAt = offsetsAt;
+        }
+    }
+
+    private final Path file;
+    private final MappedByteBuffer data;
+    private final String[] phoneTable;
+    private final List<String> partsOfSpeech;
+    private final Section addenda;
+    private final Section compiled;
+    private final Map<String, String[]> runtimeAddenda = new ConcurrentHashMap<>();
+    // Only for isSyllableBoundary(), which needs no loaded words
+    private final CMULexicon syllables = new CMULexicon("cmulex");
+    private LetterToSound letterToSound;
+
+    MappedLexicon(Path file) throws IOException {
+        this.file = file;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (data.remaining() < 8 || data.getInt() != MAGIC) {
+            throw new IOException(file + " is not a compiled lexicon");
+        }
+        int version = data.getInt();
+        if (version != VERSION) {
+            throw new IOException(file + " has unsupported lexicon version " + version);
+        }
+        int posCount = data.get() & 0xFF;
+        partsOfSpeech = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < posCount; i++) {
+            partsOfSpeech.add(String.valueOf((char) (data.get() & 0xFF)));
+        }
+        phoneTable = new String[data.getShort() & 0xFFFF];
+        for (int i = 0; i < phoneTable.length; i++) {
+            byte[] phone = new byte[data.get() & 0xFF];
+            data.get(phone);
+            phoneTable[i] = new String(phone, StandardCharsets.US_ASCII).intern();
+        }
+        addenda = readSection();
+        compiled = readSection();
+    }
+
+    /**
+     * The lexicon all voices in this process share, opened on first use;
+     * null if there is no compiled file, so FreeTTS loads its own.
+     */
+    static MappedLexicon shared() {
+        if (!sharedResolved) {
+            synchronized (MappedLexicon.class) {
+                if (!sharedResolved) {
+                    shared = open(System.getProperty("assistant.lexicon", DEFAULT_FILE));
+                    sharedResolved = true;
+                }
+            }
+        }
+        return shared;
+    }
+
+    private static MappedLexicon open(String name) {
+        if (name.isEmpty() || name.equals("none")) {
+            return null;
+        }
+        Path path = Paths.get(name);
+        if (!Files.isRegularFile(path)) {
+            if (System.getProperty("assistant.lexicon") != null) {
+                System.err.println("⚠️  No compiled lexicon at " + path + "; run Main --compile-lexicon");
+            }
+            return null;
+        }
+        try {
+            MappedLexicon lexicon = new MappedLexicon(path);
+            System.out.println("📖 Lexicon mapped from " + path + " (" + lexicon.size() + " words)");
+            return lexicon;
+        } catch (IOException e) {
+            System.err.println("⚠️  Could not map lexicon " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** Gives the voice the shared lexicon, if there is one; call before allocate(). */
+    static Voice install(Voice voice) {
+        MappedLexicon lexicon = shared();
+        if (voice != null && lexicon != null) {
+            voice.setLexicon(lexicon);
+        }
+        return voice;
+    }
+
+    private Section readSection() {
+        int count = data.getInt();
+        Section section = new Section(count, data.position());
+        data.position(data.position() + 4 * count);
+        if (count > 0) {
+            // Skip to the end of the last entry, where the next section starts
+            int last = data.getInt(section.offsetsAt + 4 * (count - 1));
+            int phonesAt = last + 1 + (data.get(last) & 0xFF) + 1;
+            data.position(phonesAt + 1 + (data.get(phonesAt) & 0xFF));
+        }
+        return section;
+    }
+
+    int size() {
+        return addenda.count + compiled.count;
+    }
+
+    // ---- Lexicon ----
+
+    @Override
+    public String[] getPhones(String word, String partOfSpeech) {
+        return getPhones(word, partOfSpeech, true);
+    }
+
+    @Override
+    public String[] getPhones(String word, String partOfSpeech, boolean useLTS) {
+        String pos = partOfSpeech == null ? "0" : partOfSpeech;
+        byte[] key = word.getBytes(StandardCharsets.UTF_8);
+        String[] phones = lookup(addenda, word, key, pos, true);
+        if (phones == null) {
+            phones = lookup(compiled, word, key, pos, false);
+        }
+        if (phones == null && useLTS) {
+            phones = letterToSound(word, partOfSpeech);
+        }
+        return phones;
+    }
+
+    // One search finds the word; its parts of speech are the adjacent entries
+    private String[] lookup(Section section, String word, byte[] key, String pos, boolean runtime) {
+        int first = find(section, key);
+        String[] phones = entry(section, first, word, key, pos, runtime);
+        for (int i = 0; phones == null && i < partsOfSpeech.size(); i++) {
+            String other = partsOfSpeech.get(i);
+            if (!other.equals(pos)) {
+                phones = entry(section, first, word, key, other, runtime);
+            }
+        }
+        return phones;
+    }
+
+    private String[] entry(Section section, int first, String word, byte[] key, String pos, boolean runtime) {
+        if (runtime && !runtimeAddenda.isEmpty()) {
+            String[] phones = runtimeAddenda.get(word + pos);
+            if (phones == REMOVED) {
+                return null;
+            }
+            if (phones != null) {
+                return phones.clone();
+            }
+        }
+        if (first < 0 || pos.length() != 1) {
+            return null;
+        }
+        for (int i = first; i < section.count; i++) {
+            int entry = data.getInt(section.offsetsAt + 4 * i);
+            if (compareWord(entry, key) != 0) {
+                break;
+            }
+            int posAt = entry + 1 + key.length;
+            if ((data.get(posAt) & 0xFF) == pos.charAt(0)) {
+                return phonesAt(posAt + 1);
+            }
+        }
+        return null;
+    }
+
+    // Index of the word's first entry, or -1; absolute reads, so lookups need no lock
+    private int find(Section section, byte[] key) {
+        int low = 0;
+        int high = section.count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int order = compareWord(data.getInt(section.offsetsAt + 4 * mid), key);
+            if (order < 0) {
+                low = mid + 1;
+            } else {
+                if (order == 0) {
+                    found = mid;
+                }
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private int compareWord(int entry, byte[] key) {
+        int length = data.get(entry) & 0xFF;
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int order = (data.get(entry + 1 + i) & 0xFF) - (key[i] & 0xFF);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return length - key.length;
+    }
+
+    private String[] phonesAt(int at) {
+        String[] phones = new String[data.get(at) & 0xFF];
+        for (int i = 0; i < phones.length; i++) {
+            phones[i] = phoneTable[data.get(at + 1 + i) & 0xFF];
+        }
+        return phones;
+    }
+
+    // LetterToSoundImpl keeps a scratch buffer per instance, so calls are serialized
+    private synchronized String[] letterToSound(String word, String partOfSpeech) {
+        if (letterToSound == null) {
+            try {
+                letterToSound = new LetterToSoundImpl(MappedLexicon.class.getResource(LTS_RESOURCE), true);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot load letter-to-sound rules", e);
+            }
+        }
+        return letterToSound.getPhones(word, partOfSpeech);
+    }
+
+    @Override
+    public void addAddendum(String word, String partOfSpeech, String[] phones) {
+        String pos = partOfSpeech == null ? "0" : partOfSpeech;
+        if (!partsOfSpeech.contains(pos)) {
+            partsOfSpeech.add(pos);
+        }
+        runtimeAddenda.put(word + pos, phones.clone());
+    }
+
+    @Override
+    public void removeAddendum(String word, String partOfSpeech) {
+        runtimeAddenda.put(word + (partOfSpeech == null ? "0" : partOfSpeech), REMOVED);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // FreeTTS's Lexicon declares a raw List
+    public boolean isSyllableBoundary(List syllablePhones, String[] wordPhones, int currentWordPhone) {
+        return syllables.isSyllableBoundary(syllablePhones, wordPhones, currentWordPhone);
+    }
+
+    /** Mapped when constructed; the letter-to-sound rules load on first use. */
+    @Override
+    public void load() {
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "MappedLexicon[" + file + "]";
+    }
+
+    // ---- Compiling ----
+
+    /** Main --compile-lexicon [file] */
+    static void run(String[] args) throws IOException {
+        Path out = Paths.get(args.length >= 2 ? args[1] : DEFAULT_FILE);
+        long started = System.nanoTime();
+        compile(out);
+        System.out.printf(Locale.ROOT, "📖 Wrote %s (%d KB) in %.0f ms%n",
+            out, Files.size(out) / 1024, (System.nanoTime() - started) / 1e6);
+    }
+
+    /** Compiles the CMU lexicon and addenda on the classpath into out. */
+    static void compile(Path out) throws IOException {
+        List<String> phones = new ArrayList<>();
+        List<String> partsOfSpeech = new ArrayList<>();
+        Map<String, byte[]> compiledWords = readFreeTTS(COMPILED_RESOURCE, phones, partsOfSpeech);
+        Map<String, byte[]> addendaWords = readFreeTTS(ADDENDA_RESOURCE, phones, partsOfSpeech);
+        if (phones.size() > 255 || partsOfSpeech.size() > 255) {
+            throw new IOException("Lexicon has too many phones or parts of speech for one byte");
+        }
+        for (String pos : partsOfSpeech) {
+            if (pos.charAt(0) > 0x7F) {
+                throw new IOException("Lexicon part of speech is not ASCII: " + pos);
+            }
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(64 * 1024);
+        header.putInt(MAGIC).putInt(VERSION);
+        header.put((byte) partsOfSpeech.size());
+        for (String pos : partsOfSpeech) {
+            header.put((byte) pos.charAt(0));
+        }
+        header.putShort((short) phones.size());
+        for (String phone : phones) {
+            byte[] bytes = phone.getBytes(StandardCharsets.US_ASCII);
+            header.put((byte) bytes.length).put(bytes);
+        }
+        header.flip();
+        ByteBuffer addendaSection = section(addendaWords, header.limit());
+        ByteBuffer compiledSection = section(compiledWords, header.limit() + addendaSection.limit());
+
+        // Written next to the target and moved over it, so a half-written file is never mapped
+        Path temp = Files.createTempFile(out.toAbsolutePath().getParent(), "lexicon", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer[] parts = {header, addendaSection, compiledSection};
+            while (compiledSection.hasRemaining()) {
+                channel.write(parts);
+            }
+        }
+        Files.move(temp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** A word as written to the file. */
+    private static final class Compiled {
+        final byte[] word;
+        final byte pos;
+        final byte[] phones;
+
+        Compiled(String key, byte[] phones) {
+            this.word = key.substring(0, key.length() - 1).getBytes(StandardCharsets.UTF_8);
+            this.pos = (byte) key.charAt(key.length() - 1);
+            this.phones = phones;
+            if (word.length > 255) {
+                throw new IllegalArgumentException("Lexicon word too long: " + key);
+            }
+        }
+
+        int bytes() {
+            return 1 + word.length + 1 + 1 + phones.length;
+        }
+    }
+
+    // Sorted by the word's UTF-8 bytes, as the lookup compares them, then by part of speech
+    private static ByteBuffer section(Map<String, byte[]> words, int start) {
+        List<Compiled> entries = new ArrayList<>();
+        int bytes = 4 + 4 * words.size();
+        for (Map.Entry<String, byte[]> word : words.entrySet()) {
+            Compiled entry = new Compiled(word.getKey(), word.getValue());
+            entries.add(entry);
+            bytes += entry.bytes();
+        }
+        entries.sort((a, b) -> {
+            int order = Arrays.compareUnsigned(a.word, b.word);
+            return order != 0 ? order : Integer.compare(a.pos & 0xFF, b.pos & 0xFF);
+        });
+
+        ByteBuffer section = ByteBuffer.allocate(bytes);
+        section.putInt(entries.size());
+        int at = start + 4 + 4 * entries.size();
+        for (Compiled entry : entries) {
+            section.putInt(at);
+            at += entry.bytes();
+        }
+        for (Compiled entry : entries) {
+            section.put((byte) entry.word.length).put(entry.word).put(entry.pos);
+            section.put((byte) entry.phones.length).put(entry.phones);
+        }
+        section.flip();
+        return section;
+    }
+
+    /**
+     * Reads a FreeTTS binary lexicon into key to phone indexes, renumbered
+     * into the shared phone table; new parts of speech are appended in the
+     * order LexiconImpl finds them.
+     */
+    private static Map<String, byte[]> readFreeTTS(String resource, List<String> phones,
+                                                   List<String> partsOfSpeech) throws IOException {
+        InputStream stream = MappedLexicon.class.getResourceAsStream(resource);
+        if (stream == null) {
+            throw new IOException(resource + " not found; is cmulex.jar on the classpath?");
+        }
+        Map<String, byte[]> words = new LinkedHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != FREETTS_MAGIC || in.readInt() != FREETTS_VERSION) {
+                throw new IOException(resource + " is not a FreeTTS binary lexicon");
+            }
+            int[] renumber = new int[in.readInt()];
+            for (int i = 0; i < renumber.length; i++) {
+                String phone = readFreeTTSString(in);
+                int index = phones.indexOf(phone);
+                if (index < 0) {
+                    index = phones.size();
+                    phones.add(phone);
+                }
+                renumber[i] = index;
+            }
+            for (int entries = in.readInt(); entries > 0; entries--) {
+                String key = readFreeTTSString(in);
+                String pos = key.substring(key.length() - 1);
+                if (!partsOfSpeech.contains(pos)) {
+                    partsOfSpeech.add(pos);
+                }
+                byte[] phoneIndexes = new byte[in.readByte()];
+                for (int i = 0; i < phoneIndexes.length; i++) {
+                    phoneIndexes[i] = (byte) renumber[in.readByte()];
+                }
+                // A repeated key replaces the earlier one, as in LexiconImpl's map
+                words.put(key, phoneIndexes);
+            }
+        }
+        return words;
+    }
+
+    private static String readFreeTTSString(DataInputStream in) throws IOException {
+        char[] chars = new char[in.readByte()];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = in.readChar();
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,243 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.*;
+
+/**
+ * Per-stage latency of the voice pipeline, from recognition to the app
+ * launch, plus a counter per matched intent and the outcome of replies
+ * synthesized speculatively from partial recognition results.
+ *
+ * Each stage has a lock-free {@link LatencyHistogram}. The numbers are
+ * printed by the "stats" command and on exit, and exported over JMX as
+ * assistant:type=PipelineMetrics with attributes such as MatchP99Millis,
+ * Intent_time and SpeculationHits.
+ */
+class PipelineMetrics implements DynamicMBean {
+
+    enum Stage {
+        RECOGNIZE("Recognize"),
+        MATCH("Match"),
+        SYNTHESIZE("Synthesize"),
+        FIRST_AUDIO("FirstAudio"),
+        PLAYBACK("Playback"),
+        LAUNCH("Launch");
+
+        final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+    }
+
+    static final PipelineMetrics GLOBAL = new PipelineMetrics();
+    static final String OBJECT_NAME = "assistant:type=PipelineMetrics";
+
+    private static final String[] STAT_SUFFIXES = {"Count", "P50Millis", "P99Millis", "MaxMillis"};
+
+    private final EnumMap<Stage, LatencyHistogram> stages = new EnumMap<>(Stage.class);
+    private final ConcurrentHashMap<String, LongAdder> intents = new ConcurrentHashMap<>();
+    private final LongAdder speculationHits = new LongAdder();
+    private final LongAdder speculationMisses = new LongAdder();
+    private final LongAdder speculationSavedNanos = new LongAdder();
+    private final LongAdder audioUnderruns = new LongAdder();
+
+    PipelineMetrics() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    void record(Stage stage, long nanos) {
+        stages.get(stage).record(nanos);
+    }
+
+    void countIntent(String intent) {
+        intents.computeIfAbsent(intent, name -> new LongAdder()).increment();
+    }
+
+    /** A speculative reply was used (hit) or thrown away; savedNanos is the synthesis it took off the critical path. */
+    void recordSpeculation(boolean hit, long savedNanos) {
+        (hit ? speculationHits : speculationMisses).increment();
+        speculationSavedNanos.add(savedNanos);
+    }
+
+    /** The audio output ran dry in the middle of an utterance. */
+    void countUnderrun() {
+        audioUnderruns.increment();
+    }
+
+    long audioUnderruns() {
+        return audioUnderruns.sum();
+    }
+
+    long speculationHits() {
+        return speculationHits.sum();
+    }
+
+    long speculationMisses() {
+        return speculationMisses.sum();
+    }
+
+    long speculationSavedNanos() {
+        return speculationSavedNanos.sum();
+    }
+
+    LatencyHistogram histogram(Stage stage) {
+        return stages.get(stage);
+    }
+
+    long commandCount() {
+        return stages.get(Stage.MATCH).count();
+    }
+
+    /** Registers this instance with the platform MBean server. */
+    void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            System.err.println("⚠️  Could not register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /** Multi-line report of every stage and intent. */
+    String report() {
+        StringBuilder report = new StringBuilder("📈 Pipeline latency (ms)\n");
+        report.append(String.format("   %-12s %8s %9s %9s %9s%n", "stage", "count", "p50", "p99", "max"));
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram h = stages.get(stage);
+            report.append(String.format("   %-12s %8d %9.3f %9.3f %9.3f%n", stage.label, h.count(),
+                millis(h.percentileNanos(50)), millis(h.percentileNanos(99)), millis(h.maxNanos())));
+        }
+        if (!intents.isEmpty()) {
+            report.append("   intents:");
+            new TreeMap<>(intents).forEach((intent, n) -> report.append(' ').append(intent).append('=').append(n.sum()));
+            report.append('\n');
+        }
+        long hits = speculationHits.sum();
+        long misses = speculationMisses.sum();
+        if (hits + misses > 0) {
+            report.append(String.format("   speculation: %d used, %d discarded (%.0f%% hit rate), %.0f ms of synthesis saved%n",
+                hits, misses, 100.0 * hits / (hits + misses), millis(speculationSavedNanos.sum())));
+        }
+        if (audioUnderruns.sum() > 0) {
+            report.append(String.format("   audio output: %d underruns%n", audioUnderruns.sum()));
+        }
+        return report.toString();
+    }
+
+    static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    // ---- DynamicMBean ----
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        if (attribute.startsWith("Intent_")) {
+            LongAdder n = intents.get(attribute.substring("Intent_".length()));
+            if (n == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return n.sum();
+        }
+        switch (attribute) {
+            case "SpeculationHits": return speculationHits.sum();
+            case "SpeculationMisses": return speculationMisses.sum();
+            case "SpeculationSavedMillis": return millis(speculationSavedNanos.sum());
+            case "AudioUnderruns": return audioUnderruns.sum();
+            default: break;
+        }
+        for (Stage stage : Stage.values()) {
+            if (attribute.startsWith(stage.label)) {
+                LatencyHistogram h = stages.get(stage);
+                switch (attribute.substring(stage.label.length())) {
+                    case "Count": return h.count();
+                    case "P50Millis": return millis(h.percentileNanos(50));
+                    case "P99Millis": return millis(h.percentileNanos(99));
+                    case "MaxMillis": return millis(h.maxNanos());
+                    default: break;
+                }
+            }
+        }
+        throw new AttributeNotFoundException(attribute);
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes) {
+            try {
+                list.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Skipped, as the DynamicMBean contract allows
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only: " + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+        if (actionName.equals("reset")) {
+            stages.values().forEach(LatencyHistogram::reset);
+            intents.clear();
+            speculationHits.reset();
+            speculationMisses.reset();
+            speculationSavedNanos.reset();
+            audioUnderruns.reset();
+            return null;
+        }
+        if (actionName.equals("report")) {
+            return report();
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<>();
+        for (Stage stage : Stage.values()) {
+            for (String suffix : STAT_SUFFIXES) {
+                String type = suffix.equals("Count") ? "long" : "double";
+                attributes.add(new MBeanAttributeInfo(stage.label + suffix, type,
+                    stage.label + " stage " + suffix, true, false, false));
+            }
+        }
+        attributes.add(new MBeanAttributeInfo("SpeculationHits", "long",
+            "Replies synthesized from a partial result and then used", true, false, false));
+        attributes.add(new MBeanAttributeInfo("SpeculationMisses", "long",
+            "Replies synthesized from a partial result and then discarded", true, false, false));
+        attributes.add(new MBeanAttributeInfo("SpeculationSavedMillis", "double",
+            "Synthesis time taken off the critical path by speculation", true, false, false));
+        attributes.add(new MBeanAttributeInfo("AudioUnderruns", "long",
+            "Times the audio output ran dry in the middle of an utterance", true, false, false));
+        for (String intent : new ConcurrentSkipListMap<>(intents).keySet()) {
+            attributes.add(new MBeanAttributeInfo("Intent_" + intent, "long",
+                "Commands matched to " + intent, true, false, false));
+        }
+        MBeanOperationInfo[] operations = {
+            new MBeanOperationInfo("reset", "Clears all histograms and counters",
+                new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION),
+            new MBeanOperationInfo("report", "Text report of all stages",
+                new MBeanParameterInfo[0], "java.lang.String", MBeanOperationInfo.INFO),
+        };
+        return new MBeanInfo(getClass().getName(), "Voice assistant pipeline metrics",
+            attributes.toArray(new MBeanAttributeInfo[0]), null, operations, null);
+    }
+}
@@ -0,0 +1,200 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline rendering of prompt audio, e.g. for kiosks that play
+ * pre-generated WAVs instead of running FreeTTS.
+ *
+ * Phrases come from a text file (one per line) or, without one, from
+ * CommandProcessor.staticResponses(). They are synthesized in parallel on
+ * a VoicePool and written either as one WAV per phrase or, with --pack,
+ * as a single indexed pack file. manifest.json lists every phrase with its
+ * file (or pack offset), audio duration and render time.
+ *
+ * Pack layout (big-endian): "WPAK", version, count, then per phrase the
+ * UTF-8 text length and bytes, offset and length of its WAV image; the WAV
+ * images follow the index back to back.
+ */
+class PromptRenderer {
+    private static final int PACK_MAGIC = 0x5750414B; // "WPAK"
+    private static final int PACK_VERSION = 1;
+    private static final int MAX_NAME_CHARS = 40;
+
+    /** One rendered phrase and where it ended up. */
+    private static final class Prompt {
+        final int index;
+        final String text;
+        ByteBuffer wav;
+        String file;
+        long offset;
+        double durationMillis;
+        double renderMillis;
+
+        Prompt(int index, String text) {
+            this.index = index;
+            this.text = text;
+        }
+    }
+
+    /** Main --render-wav &lt;outDir&gt; [phrases.txt] [--pack] */
+    static void run(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: Main --render-wav <outDir> [phrases.txt] [--pack]");
+            return;
+        }
+        Path outDir = Paths.get(args[1]);
+        String phraseFile = null;
+        boolean pack = false;
+        for (int a = 2; a < args.length; a++) {
+            if (args[a].equals("--pack")) {
+                pack = true;
+            } else {
+                phraseFile = args[a];
+            }
+        }
+        List<String> phrases = phraseFile == null ? CommandProcessor.staticResponses() : readPhrases(Paths.get(phraseFile));
+        Files.createDirectories(outDir);
+
+        long started = System.nanoTime();
+        VoicePool voices;
+        try {
+            voices = VoicePool.fromSystemProperties();
+        } catch (RuntimeException | Error e) {
+            // FreeTTS reports a missing voice directory as an Error
+            System.err.println("❌ Cannot render without a FreeTTS voice: " + e.getMessage());
+            return;
+        }
+        List<Prompt> prompts;
+        try (VoicePool pool = voices) {
+            System.out.println("🎙️  Rendering " + phrases.size() + " phrases on up to " + pool.max() + " voices...");
+            prompts = render(pool, phrases, outDir, !pack);
+        }
+        if (pack) {
+            writePack(outDir.resolve("prompts.pack"), prompts);
+        }
+        writeManifest(outDir.resolve("manifest.json"), prompts, pack);
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+        double audioSeconds = prompts.stream().mapToDouble(p -> p.durationMillis).sum() / 1000;
+        System.out.printf(Locale.ROOT, "✅ %d phrases, %.1f s of audio rendered in %.2f s (%.1fx real time) to %s%n",
+            prompts.size(), audioSeconds, seconds, audioSeconds / seconds, outDir);
+    }
+
+    private static List<String> readPhrases(Path file) throws IOException {
+        List<String> phrases = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.trim().isEmpty()) {
+                phrases.add(line.trim());
+            }
+        }
+        return phrases;
+    }
+
+    // One task per phrase; the pool caps how many synthesize at once
+    private static List<Prompt> render(VoicePool pool, List<String> phrases, Path outDir, boolean writeFiles)
+            throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(pool.max(), AppLauncher.daemonThreads("prompt-render"));
+        try {
+            List<Future<Prompt>> pending = new ArrayList<>();
+            for (int i = 0; i < phrases.size(); i++) {
+                Prompt prompt = new Prompt(i, phrases.get(i));
+                pending.add(workers.submit(() -> render(pool, prompt, outDir, writeFiles)));
+            }
+            List<Prompt> prompts = new ArrayList<>();
+            for (Future<Prompt> prompt : pending) {
+                prompts.add(prompt.get());
+            }
+            return prompts;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static Prompt render(VoicePool pool, Prompt prompt, Path outDir, boolean writeFile) throws Exception {
+        VoicePool.Rendered rendered = pool.render(prompt.text);
+        if (rendered == null) {
+            throw new IOException("FreeTTS produced no audio for: " + prompt.text);
+        }
+        ByteBuffer pcm = ByteBuffer.wrap(rendered.pcm);
+        prompt.renderMillis = rendered.renderNanos / 1e6;
+        prompt.durationMillis = WavFiles.durationMillis(rendered.format, rendered.pcm.length);
+        if (writeFile) {
+            prompt.file = fileName(prompt);
+            WavFiles.write(outDir.resolve(prompt.file), rendered.format, pcm);
+        } else {
+            prompt.wav = WavFiles.image(rendered.format, pcm);
+        }
+        return prompt;
+    }
+
+    // e.g. "007-opening-calculator.wav"
+    private static String fileName(Prompt prompt) {
+        String slug = prompt.text.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+        if (slug.length() > MAX_NAME_CHARS) {
+            slug = slug.substring(0, MAX_NAME_CHARS).replaceAll("-$", "");
+        }
+        return String.format(Locale.ROOT, "%03d-%s.wav", prompt.index, slug.isEmpty() ? "prompt" : slug);
+    }
+
+    private static void writePack(Path file, List<Prompt> prompts) throws IOException {
+        List<byte[]> names = new ArrayList<>();
+        int indexBytes = 12;
+        for (Prompt prompt : prompts) {
+            byte[] name = prompt.text.getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            indexBytes += 4 + name.length + 8 + 4;
+        }
+        ByteBuffer index = ByteBuffer.allocate(indexBytes);
+        index.putInt(PACK_MAGIC).putInt(PACK_VERSION).putInt(prompts.size());
+        long offset = indexBytes;
+        for (int i = 0; i < prompts.size(); i++) {
+            Prompt prompt = prompts.get(i);
+            prompt.offset = offset;
+            index.putInt(names.get(i).length).put(names.get(i)).putLong(offset).putInt(prompt.wav.remaining());
+            offset += prompt.wav.remaining();
+        }
+        index.flip();
+
+        ByteBuffer[] parts = new ByteBuffer[prompts.size() + 1];
+        parts[0] = index;
+        for (int i = 0; i < prompts.size(); i++) {
+            parts[i + 1] = prompts.get(i).wav;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (parts[parts.length - 1].hasRemaining()) {
+                channel.write(parts);
+            }
+        }
+        System.out.println("📦 Wrote " + prompts.size() + " prompts to " + file);
+    }
+
+    private static void writeManifest(Path file, List<Prompt> prompts, boolean pack) throws IOException {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < prompts.size(); i++) {
+            Prompt prompt = prompts.get(i);
+            json.append("  {\"text\":").append(BatchRunner.quote(prompt.text));
+            if (pack) {
+                json.append(",\"pack\":\"prompts.pack\",\"offset\":").append(prompt.offset)
+                    .append(",\"bytes\":").append(prompt.wav.capacity());
+            } else {
+                json.append(",\"file\":").append(BatchRunner.quote(prompt.file));
+            }
+            json.append(String.format(Locale.ROOT, ",\"durationMs\":%.1f,\"renderMs\":%.1f}",
+                prompt.durationMillis, prompt.renderMillis));
+            json.append(i + 1 < prompts.size() ? ",\n" : "\n");
+        }
+        json.append("]\n");
+        Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
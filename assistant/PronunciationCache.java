@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.lexicon.Lexicon;
+
+/**
+ * Word to phones cache in front of a voice's lexicon and letter-to-sound
+ * rules.
+ *
+ * FreeTTS's Segmenter asks the lexicon for every word of every utterance,
+ * and each word the lexicon does not know ("whatsapp", "msinfo") goes
+ * through the letter-to-sound decision trees again. Replies reuse a small
+ * vocabulary, so the answers are kept here. One cache is shared by every
+ * voice in the process, the speaking voice and the render pool's; hits are
+ * a ConcurrentHashMap read with no lock. Misses go to the wrapped lexicon
+ * one at a time, because FreeTTS's letter-to-sound rules are not safe to
+ * call concurrently.
+ *
+ * Holds -Dassistant.pronunciationCache.size words (default 4096; 0 turns
+ * the cache off). Past that, a second-chance sweep in insertion order
+ * evicts words not looked up since the sweep last passed them.
+ *
+ * warm() looks up the words of the static replies and the numbers, letters,
+ * days and months the time and date replies are spoken with, so those are
+ * hits from the first reply on.
+ */
+class PronunciationCache implements Lexicon {
+    static final int DEFAULT_SIZE = 4096;
+
+    // How FreeTTS reads times and dates: "12:05 PM" is "twelve oh five p m", the 18th is "eighteenth"
+    private static final List<String> NUMBER_WORDS = Arrays.asList(
+        "zero", "oh", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+        "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen",
+        "twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety", "hundred", "thousand",
+        "first", "second", "third", "fourth", "fifth", "sixth", "seventh", "eighth", "ninth", "tenth",
+        "eleventh", "twelfth", "thirteenth", "fourteenth", "fifteenth", "sixteenth", "seventeenth",
+        "eighteenth", "nineteenth", "twentieth", "thirtieth", "am");
+
+    private static PronunciationCache shared;
+
+    /** Cached phones; null when the word is not in the lexicon and letter-to-sound was not asked. */
+    private static final class Entry {
+        final String[] phones;
+        final boolean guessed;
+        volatile boolean referenced;
+
+        Entry(String[] phones, boolean guessed) {
+            this.phones = phones;
+            this.guessed = guessed;
+        }
+    }
+
+    private final Lexicon lexicon;
+    private final int maxWords;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    // Keys in insertion order for the eviction sweep; guarded by itself when sweeping
+    private final ConcurrentLinkedQueue<String> sweep = new ConcurrentLinkedQueue<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder guesses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    PronunciationCache(Lexicon lexicon, int maxWords) {
+        this.lexicon = lexicon;
+        this.maxWords = maxWords;
+    }
+
+    /**
+     * Wraps the voice's lexicon, or the mapped one if there is a file, in
+     * the cache every voice shares; call before allocate().
+     */
+    static Voice install(Voice voice) {
+        MappedLexicon.install(voice);
+        int size = Integer.getInteger("assistant.pronunciationCache.size", DEFAULT_SIZE);
+        if (voice != null && size > 0) {
+            PronunciationCache cache = shared(voice.getLexicon(), size);
+            // A voice with a different kind of lexicon keeps its own
+            if (cache.lexicon == voice.getLexicon() || cache.lexicon.getClass() == voice.getLexicon().getClass()) {
+                voice.setLexicon(cache);
+            }
+        }
+        return voice;
+    }
+
+    private static synchronized PronunciationCache shared(Lexicon lexicon, int size) {
+        if (shared == null) {
+            shared = new PronunciationCache(lexicon, size);
+        }
+        return shared;
+    }
+
+    /** The cache installed voices share; null before the first install or when it is off. */
+    static synchronized PronunciationCache shared() {
+        return shared;
+    }
+
+    /** Looks up the words of texts and of spoken times and dates; returns how many words that was. */
+    int warm(Collection<String> texts) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String text : texts) {
+            // FreeTTS splits letters from digits and punctuation the same way
+            for (String word : text.toLowerCase(Locale.ROOT).split("[^a-z]+")) {
+                if (!word.isEmpty()) {
+                    words.add(word);
+                }
+            }
+        }
+        words.addAll(NUMBER_WORDS);
+        // Spelled-out names such as "msinfo32" and "PM" are read letter by letter
+        for (char letter = 'a'; letter <= 'z'; letter++) {
+            words.add(String.valueOf(letter));
+        }
+        // Day and month names as the date replies' DateTimeFormatter writes them
+        for (DayOfWeek day : DayOfWeek.values()) {
+            words.add(day.getDisplayName(TextStyle.FULL, Locale.getDefault()).toLowerCase(Locale.ROOT));
+        }
+        for (Month month : Month.values()) {
+            words.add(month.getDisplayName(TextStyle.FULL, Locale.getDefault()).toLowerCase(Locale.ROOT));
+        }
+        for (String word : words) {
+            getPhones(word, null);
+        }
+        return words.size();
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+
+    String stats() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        double hitRate = total == 0 ? 0 : 100.0 * hitCount / total;
+        return String.format(Locale.ROOT, "%d words, %d hits, %d misses (%.1f%% hit rate), "
+                + "%d by letter-to-sound, %d evictions",
+            entries.size(), hitCount, total - hitCount, hitRate, guesses.sum(), evictions.sum());
+    }
+
+    // ---- Lexicon ----
+
+    @Override
+    public String[] getPhones(String word, String partOfSpeech) {
+        return getPhones(word, partOfSpeech, true);
+    }
+
+    @Override
+    public String[] getPhones(String word, String partOfSpeech, boolean useLTS) {
+        String key = partOfSpeech == null ? word : word + '\u0000' + partOfSpeech;
+        Entry entry = entries.get(key);
+        if (entry != null && (entry.phones != null || !useLTS)) {
+            entry.referenced = true;
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = lookup(word, partOfSpeech, useLTS);
+            if (entries.put(key, entry) == null) {
+                sweep.add(key);
+                if (entries.size() > maxWords) {
+                    evict();
+                }
+            }
+        }
+        // Callers own the array they get, as with LexiconImpl
+        return entry.phones == null || (entry.guessed && !useLTS) ? null : entry.phones.clone();
+    }
+
+    private Entry lookup(String word, String partOfSpeech, boolean useLTS) {
+        synchronized (lexicon) {
+            String[] phones = lexicon.getPhones(word, partOfSpeech, false);
+            if (phones != null || !useLTS) {
+                return new Entry(phones, false);
+            }
+            phones = lexicon.getPhones(word, partOfSpeech, true);
+            if (phones != null) {
+                guesses.increment();
+            }
+            return new Entry(phones, phones != null);
+        }
+    }
+
+    private void evict() {
+        synchronized (sweep) {
+            while (entries.size() > maxWords) {
+                String key = sweep.poll();
+                if (key == null) {
+                    return;
+                }
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    continue;
+                }
+                if (entry.referenced) {
+                    entry.referenced = false;
+                    sweep.add(key);
+                } else if (entries.remove(key, entry)) {
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    private void invalidate() {
+        synchronized (sweep) {
+            entries.clear();
+            sweep.clear();
+        }
+    }
+
+    @Override
+    public void addAddendum(String word, String partOfSpeech, String[] phones) {
+        synchronized (lexicon) {
+            lexicon.addAddendum(word, partOfSpeech, phones);
+        }
+        invalidate();
+    }
+
+    @Override
+    public void removeAddendum(String word, String partOfSpeech) {
+        synchronized (lexicon) {
+            lexicon.removeAddendum(word, partOfSpeech);
+        }
+        invalidate();
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes") // FreeTTS's Lexicon declares a raw List
+    public boolean isSyllableBoundary(List syllablePhones, String[] wordPhones, int currentWordPhone) {
+        return lexicon.isSyllableBoundary(syllablePhones, wordPhones, currentWordPhone);
+    }
+
+    // Every voice's allocate() calls this; the first one loads the wrapped lexicon
+    @Override
+    public void load() throws IOException {
+        synchronized (lexicon) {
+            if (!lexicon.isLoaded()) {
+                lexicon.load();
+            }
+        }
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return lexicon.isLoaded();
+    }
+
+    @Override
+    public String toString() {
+        return "PronunciationCache[" + lexicon + "]";
+    }
+}
@@ -0,0 +1,62 @@
+import java.io.IOException;
+import java.util.function.Consumer;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Source of recognized speech for SpeechRecognizer.
+ *
+ * Implementations keep whatever engine they use warm between calls, so one
+ * utterance costs one recognition and not an engine startup.
+ */
+interface RecognizerBackend {
+
+    /** Starts the engine if needed and reports whether it can recognize speech. */
+    boolean isAvailable();
+
+    /**
+     * Listens for one utterance. Returns the recognized text, or null when
+     * nothing was heard before the timeout.
+     */
+    String recognize(long timeoutMillis) throws IOException;
+
+    /**
+     * Like recognize(), also handing interim hypotheses to partials while
+     * the user is still speaking. Backends without them never call it.
+     */
+    default String recognize(long timeoutMillis, Consumer<String> partials) throws IOException {
+        return recognize(timeoutMillis);
+    }
+
+    /**
+     * Recognizes an utterance already recorded and endpointed, as 16-bit
+     * little-endian PCM in format. Returns null when nothing was recognized.
+     */
+    String recognize(byte[] pcm, AudioFormat format, Consumer<String> partials) throws IOException;
+
+    void close();
+
+    /**
+     * Creates the backend named by -Dassistant.recognizer: "powershell"
+     * (default, Windows System.Speech), "stub" (scripted Java worker) or
+     * "none".
+     */
+    static RecognizerBackend fromSystemProperties() {
+        String name = System.getProperty("assistant.recognizer", "powershell");
+        switch (name) {
+            case "stub":
+                return new WorkerRecognizerBackend("stub", StubRecognizerWorker.command(
+                    System.getProperty("assistant.recognizer.script", "")));
+            case "none":
+                return new RecognizerBackend() {
+                    public boolean isAvailable() { return false; }
+                    public String recognize(long timeoutMillis) { return null; }
+                    public String recognize(byte[] pcm, AudioFormat format, Consumer<String> partials) { return null; }
+                    public void close() { }
+                };
+            default:
+                return new WorkerRecognizerBackend("powershell", java.util.List.of(
+                    "powershell", "-NoProfile", "-ExecutionPolicy", "Bypass",
+                    "-File", "recognizer_worker.ps1"));
+        }
+    }
+}
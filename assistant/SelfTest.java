@@ -0,0 +1,711 @@
+import java.io.IOException;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+
+/**
+ * Main --self-test: checks that run without a microphone, speakers or
+ * FreeTTS voice, and exits with status 1 if any fails. compile.bat runs it
+ * after every build. Commands come from the commands.properties and WAV
+ * fixtures on the classpath, so it can run from any directory.
+ *
+ * LADDER lists every trigger phrase of the if/else contains() ladder that
+ * commands.properties replaced, with the branch the ladder took for it, so
+ * a reordered or edited table that changes which command wins shows up
+ * here. The speculation check drives StubRecognizerWorker through a
+ * scripted utterance with one wrong and one right partial, and the
+ * recognizer checks through a hang, a crash and a close. Each check
+ * prints what it found and returns false on a mismatch.
+ */
+class SelfTest {
+    // Command, then the intent the old ladder picked ("unknown" when no branch matched)
+    private static final String[][] LADDER = {
+        // Application Commands
+        { "open calculator", "calculator" },
+        { "calculator", "calculator" },
+        { "open notepad", "notepad" },
+        { "notepad", "notepad" },
+        { "open file manager", "file_manager" },
+        { "open explorer", "file_manager" },
+        { "file manager", "file_manager" },
+        { "open chrome", "chrome" },
+        { "open chrome youtube", "youtube" },
+        { "open chrome music", "unknown" },
+        { "open edge", "edge" },
+        { "open firefox", "firefox" },
+
+        // Web Services
+        { "play songs", "youtube_music" },
+        { "open music", "youtube_music" },
+        { "youtube music", "youtube_music" },
+        { "open youtube", "youtube" },
+        { "youtube", "youtube" },
+        { "open google", "google" },
+        { "google", "google" },
+        { "open gmail", "gmail" },
+        { "gmail", "gmail" },
+        { "open facebook", "facebook" },
+        { "facebook", "facebook" },
+        { "open twitter", "twitter" },
+        { "twitter", "twitter" },
+        { "open x", "twitter" },
+        { "open instagram", "instagram" },
+        { "instagram", "instagram" },
+        { "open whatsapp", "whatsapp" },
+        { "whatsapp", "whatsapp" },
+        { "open linkedin", "linkedin" },
+        { "linkedin", "linkedin" },
+
+        // System Commands
+        { "open control panel", "control_panel" },
+        { "control panel", "control_panel" },
+        { "open task manager", "task_manager" },
+        { "task manager", "task_manager" },
+        { "open settings", "settings" },
+        { "windows settings", "settings" },
+        { "open command prompt", "command_prompt" },
+        { "open cmd", "command_prompt" },
+        { "command prompt", "command_prompt" },
+        { "open powershell", "powershell" },
+        { "powershell", "powershell" },
+
+        // Office Applications
+        { "open word", "word" },
+        { "microsoft word", "word" },
+        { "open excel", "excel" },
+        { "microsoft excel", "excel" },
+        { "open powerpoint", "powerpoint" },
+        { "microsoft powerpoint", "powerpoint" },
+
+        // Media and Entertainment
+        { "open media player", "media_player" },
+        { "media player", "media_player" },
+        { "open paint", "paint" },
+        { "paint", "paint" },
+        { "open netflix", "netflix" },
+        { "netflix", "netflix" },
+        { "open spotify", "spotify" },
+        { "spotify", "spotify" },
+
+        // Time and Date
+        { "what time", "time" },
+        { "current time", "time" },
+        { "time now", "time" },
+        { "time", "time" },
+        { "what time is it", "time" },
+        { "what date", "date" },
+        { "current date", "date" },
+        { "today", "date" },
+        { "date", "date" },
+        { "what day", "day" },
+        { "which day", "day" },
+        { "day", "unknown" },
+
+        // Weather
+        { "weather", "weather" },
+        { "temperature", "weather" },
+
+        // Greetings and Interactions
+        { "hello", "greeting" },
+        { "hi", "greeting" },
+        { "hey", "greeting" },
+        { "how are you", "how_are_you" },
+        { "good morning", "good_morning" },
+        { "good evening", "good_evening" },
+        { "good night", "good_night" },
+        { "what can you do", "help" },
+        { "help", "help" },
+        { "commands", "help" },
+        { "thank you", "thanks" },
+        { "thanks", "thanks" },
+        { "what is your name", "identity" },
+        { "who are you", "identity" },
+
+        // Search Commands (the ladder tested "google" first)
+        { "search for cats", "search" },
+        { "google search cats", "google" },
+
+        // Fun Commands
+        { "tell me a joke", "joke" },
+        { "joke", "joke" },
+        { "flip a coin", "coin" },
+        { "coin flip", "coin" },
+        { "roll a dice", "dice" },
+        { "roll dice", "dice" },
+
+        // Math Commands
+        { "calculate 2 plus 2", "math" },
+        { "what is 2 plus 2", "math" },
+
+        // Voice Test
+        { "test voice", "voice_test" },
+        { "speak test", "voice_test" },
+
+        // System Info
+        { "system info", "system_info" },
+        { "computer info", "system_info" },
+
+        // Exit Commands
+        { "exit", "exit" },
+        { "stop", "exit" },
+        { "goodbye", "exit" },
+        { "quit", "exit" },
+        { "bye", "exit" },
+
+        // No trigger at all
+        { "sing a song", "unknown" },
+    };
+
+    // Triggers added to commands.properties since the ladder; none of them matched before
+    private static final String[][] ADDED = {
+        { "stats", "stats" },
+        { "statistics", "stats" },
+        { "divide 6 by 3", "math" },
+        { "multiply 2 by 3", "math" },
+        { "subtract 2 from 5", "math" },
+        { "add 2 and 3", "math" },
+    };
+
+    // Recognizer slips the exact matcher misses: command, intent, lowest acceptable confidence
+    private static final String[][] FUZZY = {
+        { "open note pad", "notepad", "1.0" },
+        { "you tube", "youtube", "1.0" },
+        { "calculater", "calculator", "0.9" },
+        { "open calculater please", "calculator", "0.9" },
+        // Nothing close enough: must stay unknown
+        { "order a pizza", "unknown", "0" },
+        { "turn on the lights", "unknown", "0" },
+    };
+
+    // Expression, then SpokenMath's formatted result, or "error" for a MathException
+    private static final String[][] MATH = {
+        // Precedence and associativity
+        { "2 plus 3 times 4", "14" },
+        { "(2 plus 3) times 4", "20" },
+        { "10 minus 4 minus 3", "3" },
+        { "100 divided by 10 divided by 2", "5" },
+        { "2 ^ 3 ^ 2", "512" },
+        { "minus 2 squared", "-4" },
+        { "ten percent of fifty", "5" },
+        { "subtract 4 from 9", "5" },
+        { "0.1 plus 0.2", "0.3" },
+        // Number words
+        { "one hundred and five plus twenty-five", "130" },
+        { "three point one four times two", "6.28" },
+        { "one million two thousand and five", "1002005" },
+        { "nineteen hundred plus one", "1901" },
+        { "one two", "error" },
+        { "five twenty", "error" },
+        { "twenty twelve", "error" },
+        { "hundred hundred hundred", "error" },
+        { "two hundred five hundred", "error" },
+        { "two thousand one million", "error" },
+        // Nesting limit (32) and other errors
+        { "(".repeat(32) + "7" + ")".repeat(32), "7" },
+        { "(".repeat(33) + "7" + ")".repeat(33), "error" },
+        { "minus ".repeat(33) + "7", "error" },
+        { "5 divided by 0", "error" },
+        { "square root of minus 4", "error" },
+        { "2 plus", "error" },
+        { "(2 plus 3", "error" },
+    };
+
+    // Enough ~1 KB records to fill the smallest segment (64 KB) and start a second
+    private static final int JOURNAL_ENTRIES = 100;
+
+    // Partials arrive as "open google" and then "open youtube"; the user meant the second
+    private static final String SPECULATION_SCRIPT =
+        "!partial open google|!sleep 50|!partial open youtube|!sleep 100|open youtube please";
+    // Each worker answers once and then fails; a restarted worker starts the script again
+    private static final String HANG_SCRIPT = "hello|!hang";
+    private static final String CRASH_SCRIPT = "hello|!crash";
+    // Recognition timeout and round-trip grace for the hang check
+    private static final long HANG_TIMEOUT_MILLIS = 300;
+    private static final long HANG_GRACE_MILLIS = 200;
+    // 22.05 kHz stereo: 1 s of near silence, 1.2 s of a voiced tone, 0.8 s of near silence
+    private static final String UTTERANCE_FIXTURE = "utterance-22k-stereo.wav";
+    // Synthetic vowel glides at 16 kHz: two templates of "a-i-u" at different pitches and
+    // speeds, a clip with one more, and a clip with other glides ("o-e-ae-o", "u-a") only
+    private static final String WAKE_TEMPLATES = "wake";
+    private static final String WAKE_POSITIVE = "wake-positive.wav";
+    private static final String WAKE_NEGATIVE = "wake-negative.wav";
+    // FreeTTS-style big-endian audio, in stereo so a frame is wider than a sample
+    private static final AudioFormat SINK_FORMAT = new AudioFormat(16000, 16, 2, true, true);
+    // Odd write sizes split frames and samples across writes, and end in half a frame
+    private static final int[] SINK_WRITES = { 1, 3, 4, 6, 2, 5, 7, 4, 2 };
+    // Null sink: buffer, an utterance written without pause, and a pause longer than the buffer
+    private static final int SINK_BUFFER_MILLIS = 50;
+    private static final int SINK_UTTERANCE_MILLIS = 300;
+    private static final int SINK_PAUSE_MILLIS = 150;
+    // Time the stand-in render voice takes per reply
+    private static final long RENDER_MILLIS = 20;
+
+    static void run(String[] args) throws Exception {
+        // The shipped table, whatever the working directory and whatever edits it has
+        System.setProperty("assistant.commands", CommandRegistry.BUNDLED);
+        boolean passed = checkIntents("intent table against the old ladder", LADDER);
+        passed &= checkIntents("intents added since the ladder", ADDED);
+        passed &= checkFuzzy();
+        passed &= checkMath();
+        passed &= checkSpeculation();
+        passed &= checkFailedSpeculation();
+        passed &= checkLauncher();
+        passed &= checkJournal();
+        passed &= checkFileSink();
+        passed &= checkNullSink();
+        passed &= checkRecognizerHang();
+        passed &= checkRecognizerCrash();
+        passed &= checkRecognizerClose();
+        passed &= checkEndpointedUtterance();
+        passed &= checkWakeWord();
+        if (!passed) {
+            System.out.println("❌ Self-test failed");
+            System.exit(1);
+        }
+        System.out.println("✅ Self-test passed");
+    }
+
+    // Exact matching only, as the ladder had no fuzzy fallback
+    private static boolean checkIntents(String name, String[][] cases) {
+        IntentMatcher<CommandProcessor.CommandHandler> intents = CommandProcessor.intents();
+        int failures = 0;
+        for (String[] c : cases) {
+            IntentMatcher.Match<CommandProcessor.CommandHandler> match = intents.match(c[0]);
+            String intent = match == null ? "unknown" : match.intent;
+            if (!intent.equals(c[1])) {
+                System.out.printf(Locale.ROOT, "   ❌ '%s' matched %s, expected %s%n", c[0], intent, c[1]);
+                failures++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%s %s: %d of %d commands%n",
+            failures == 0 ? "✅" : "❌", name, cases.length - failures, cases.length);
+        return failures == 0;
+    }
+
+    // Exact match first and fuzzy only when it finds nothing, as processCommand does
+    private static boolean checkFuzzy() {
+        IntentMatcher<CommandProcessor.CommandHandler> intents = CommandProcessor.intents();
+        int failures = 0;
+        for (String[] c : FUZZY) {
+            IntentMatcher.Match<CommandProcessor.CommandHandler> match = intents.match(c[0]);
+            if (match == null) {
+                match = intents.matchFuzzy(c[0]);
+            }
+            String intent = match == null ? "unknown" : match.intent;
+            double confidence = match == null ? 0 : match.confidence;
+            if (!intent.equals(c[1]) || confidence < Double.parseDouble(c[2])) {
+                System.out.printf(Locale.ROOT, "   ❌ '%s' matched %s (confidence %.2f), expected %s (at least %s)%n",
+                    c[0], intent, confidence, c[1], c[2]);
+                failures++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%s fuzzy intents: %d of %d commands%n",
+            failures == 0 ? "✅" : "❌", FUZZY.length - failures, FUZZY.length);
+        return failures == 0;
+    }
+
+    private static boolean checkMath() {
+        int failures = 0;
+        for (String[] c : MATH) {
+            String result;
+            try {
+                result = SpokenMath.format(SpokenMath.parseUncached(c[0]).evaluate());
+            } catch (SpokenMath.MathException e) {
+                result = "error";
+            }
+            if (!result.equals(c[1])) {
+                System.out.printf(Locale.ROOT, "   ❌ '%s' gave %s, expected %s%n", c[0], result, c[1]);
+                failures++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "%s spoken math: %d of %d expressions%n",
+            failures == 0 ? "✅" : "❌", MATH.length - failures, MATH.length);
+        return failures == 0;
+    }
+
+    /**
+     * The reply to the right partial must be kept and the wrong one's
+     * discarded, for one hit, one miss and some synthesis time saved.
+     */
+    private static boolean checkSpeculation() throws Exception {
+        Set<String> rendered = ConcurrentHashMap.newKeySet();
+        Set<String> discarded = ConcurrentHashMap.newKeySet();
+        PipelineMetrics metrics = new PipelineMetrics();
+        SpeculativeSynthesizer speculator = new SpeculativeSynthesizer(text -> CompletableFuture.supplyAsync(() -> {
+            try {
+                Thread.sleep(RENDER_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return rendered.add(text);
+        }), discarded::add, metrics);
+
+        RecognizerBackend recognizer = new WorkerRecognizerBackend("stub",
+            StubRecognizerWorker.command(SPECULATION_SCRIPT));
+        String transcript;
+        try {
+            speculator.begin();
+            transcript = recognizer.recognize(5000, speculator::onPartial);
+            speculator.resolve(transcript);
+        } finally {
+            recognizer.close();
+        }
+
+        List<String> kept = CommandProcessor.previewResponses("open youtube");
+        List<String> dropped = CommandProcessor.previewResponses("open google");
+        if (kept == null || dropped == null) {
+            System.out.println("❌ speculation: 'open youtube' or 'open google' has no predictable reply");
+            return false;
+        }
+        // Discards of renders still running happen when they finish
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!discarded.containsAll(dropped) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        boolean passed = "open youtube please".equals(transcript)
+            && rendered.containsAll(kept) && rendered.containsAll(dropped)
+            && discarded.containsAll(dropped) && Collections.disjoint(discarded, kept)
+            && metrics.speculationHits() == 1 && metrics.speculationMisses() == 1
+            && metrics.speculationSavedNanos() > 0;
+        System.out.printf(Locale.ROOT, "%s speculation: '%s' kept %s, discarded %s, %d used, %d discarded, %.0f ms saved%n",
+            passed ? "✅" : "❌", transcript, kept, discarded, metrics.speculationHits(), metrics.speculationMisses(),
+            PipelineMetrics.millis(metrics.speculationSavedNanos()));
+        return passed;
+    }
+
+    /** A render that throws must count as a discard, not escape from resolve() into the recognition loop. */
+    private static boolean checkFailedSpeculation() {
+        PipelineMetrics metrics = new PipelineMetrics();
+        CompletableFuture<Boolean> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("render voice failed"));
+        SpeculativeSynthesizer speculator = new SpeculativeSynthesizer(text -> failed, text -> { }, metrics);
+        boolean passed;
+        try {
+            speculator.begin();
+            speculator.onPartial("open google");
+            speculator.resolve("open google");
+            passed = metrics.speculationHits() == 0;
+        } catch (RuntimeException e) {
+            passed = false;
+        }
+        System.out.printf(Locale.ROOT, "%s failed speculative render: %d used%n",
+            passed ? "✅" : "❌", metrics.speculationHits());
+        return passed;
+    }
+
+    /**
+     * A launch slot is held for as long as the child runs: with two slots,
+     * a third launch while two children are alive is rejected, and one is
+     * accepted again once they exit.
+     */
+    private static boolean checkLauncher() throws Exception {
+        // Something that runs for about two seconds without a console, on Windows and elsewhere
+        String child = System.getProperty("os.name").startsWith("Windows") ? "ping -n 3 127.0.0.1" : "sleep 2";
+        AppLauncher launcher = new AppLauncher(2, 5000);
+        try {
+            CompletableFuture<AppLauncher.LaunchResult> first = launcher.launch(child);
+            CompletableFuture<AppLauncher.LaunchResult> second = launcher.launch(child);
+            AppLauncher.LaunchResult third = launcher.launch(child).get(5, TimeUnit.SECONDS);
+            long deadline = System.currentTimeMillis() + 2000;
+            while (launcher.runningCount() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            int running = launcher.runningCount();
+            boolean exited = first.get(10, TimeUnit.SECONDS).succeeded() && second.get(10, TimeUnit.SECONDS).succeeded();
+            AppLauncher.LaunchResult after = launcher.launch(child).get(10, TimeUnit.SECONDS);
+            boolean passed = third.status == AppLauncher.LaunchResult.Status.REJECTED && running == 2
+                && exited && after.succeeded();
+            System.out.printf(Locale.ROOT, "%s launcher: third launch %s with %d running, %s after they exited%n",
+                passed ? "✅" : "❌", third.status, running, after.status);
+            return passed;
+        } finally {
+            launcher.shutdown();
+        }
+    }
+
+    /**
+     * A worker that stops answering is given up on at the timeout plus
+     * grace, and the next recognize runs on a restarted worker.
+     */
+    private static boolean checkRecognizerHang() throws Exception {
+        WorkerRecognizerBackend recognizer = new WorkerRecognizerBackend("stub",
+            StubRecognizerWorker.command(HANG_SCRIPT), HANG_GRACE_MILLIS);
+        try {
+            String first = recognizer.recognize(HANG_TIMEOUT_MILLIS);
+            long started = System.nanoTime();
+            String hung = recognizer.recognize(HANG_TIMEOUT_MILLIS);
+            long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            String after = recognizer.recognize(HANG_TIMEOUT_MILLIS);
+            // stop() may take up to a second to see the process exit
+            boolean passed = "hello".equals(first) && hung == null
+                && waitedMillis >= HANG_TIMEOUT_MILLIS && waitedMillis < HANG_TIMEOUT_MILLIS + HANG_GRACE_MILLIS + 1000
+                && "hello".equals(after) && recognizer.restarts() == 1;
+            System.out.printf(Locale.ROOT, "%s recognizer hang: gave up after %d ms, then '%s' with %d restart(s)%n",
+                passed ? "✅" : "❌", waitedMillis, after, recognizer.restarts());
+            return passed;
+        } finally {
+            recognizer.close();
+        }
+    }
+
+    /** A worker that dies mid-request is restarted and the request retried once. */
+    private static boolean checkRecognizerCrash() throws Exception {
+        WorkerRecognizerBackend recognizer = new WorkerRecognizerBackend("stub",
+            StubRecognizerWorker.command(CRASH_SCRIPT));
+        try {
+            String first = recognizer.recognize(1000);
+            String retried = recognizer.recognize(1000);
+            boolean passed = "hello".equals(first) && "hello".equals(retried) && recognizer.restarts() == 1;
+            System.out.printf(Locale.ROOT, "%s recognizer crash: '%s' after the crash with %d restart(s)%n",
+                passed ? "✅" : "❌", retried, recognizer.restarts());
+            return passed;
+        } catch (IOException e) {
+            System.out.println("❌ recognizer crash: " + e.getMessage());
+            return false;
+        } finally {
+            recognizer.close();
+        }
+    }
+
+    /** close() must not wait out a recognize in progress, and must end it. */
+    private static boolean checkRecognizerClose() throws Exception {
+        WorkerRecognizerBackend recognizer = new WorkerRecognizerBackend("stub",
+            StubRecognizerWorker.command("!hang"));
+        recognizer.isAvailable();
+        CompletableFuture<String> listening = CompletableFuture.supplyAsync(() -> {
+            try {
+                return recognizer.recognize(10000);
+            } catch (IOException e) {
+                return "closed";
+            }
+        });
+        // Let the request reach the worker before closing
+        Thread.sleep(200);
+        long started = System.nanoTime();
+        recognizer.close();
+        String outcome;
+        try {
+            outcome = listening.get(3, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            outcome = "still waiting";
+        }
+        long closedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        boolean passed = "closed".equals(outcome) && closedMillis < 3000;
+        System.out.printf(Locale.ROOT, "%s recognizer close: recognize ended (%s) %d ms after close()%n",
+            passed ? "✅" : "❌", outcome, closedMillis);
+        return passed;
+    }
+
+    /**
+     * A recording that is neither 16 kHz nor mono is converted, endpointed
+     * into one utterance with pre-roll and hangover, and recognized from
+     * the recording alone through RECOGNIZE_WAV.
+     */
+    private static boolean checkEndpointedUtterance() throws Exception {
+        AudioRecorder recorder = new AudioRecorder();
+        List<byte[]> utterances = new ArrayList<>();
+        recorder.setUtteranceListener((pcm, format) -> utterances.add(pcm));
+        CompletableFuture<byte[]> next = recorder.nextUtterance();
+        try (AudioInputStream stream = AudioSystem.getAudioInputStream(fixture(UTTERANCE_FIXTURE))) {
+            recorder.process(stream);
+        }
+        byte[] utterance = next.getNow(null);
+        double millis = utterance == null ? 0 : WavFiles.durationMillis(recorder.getAudioFormat(), utterance.length);
+
+        RecognizerBackend recognizer = new WorkerRecognizerBackend("stub", StubRecognizerWorker.command("open notepad"));
+        String transcript;
+        try {
+            transcript = utterance == null ? null : recognizer.recognize(utterance, recorder.getAudioFormat(), null);
+        } catch (IOException e) {
+            transcript = e.getMessage();
+        } finally {
+            recognizer.close();
+        }
+        // 1.2 s of sound, plus up to 0.2 s of pre-roll and 0.5 s of hangover
+        boolean passed = utterances.size() == 1 && millis >= 1200 && millis <= 2000 && "open notepad".equals(transcript);
+        System.out.printf(Locale.ROOT, "%s endpointed utterance: %d found, %.0f ms, recognized as '%s'%n",
+            passed ? "✅" : "❌", utterances.size(), millis, transcript);
+        return passed;
+    }
+
+    /** The wake word is spotted once in the clip that has it and never in the one that does not. */
+    private static boolean checkWakeWord() throws Exception {
+        long positive = wakeWordDetections(WAKE_POSITIVE);
+        long negative = wakeWordDetections(WAKE_NEGATIVE);
+        boolean passed = positive == 1 && negative == 0;
+        System.out.printf(Locale.ROOT, "%s wake word: %d detection(s) in %s, %d in %s%n",
+            passed ? "✅" : "❌", positive, WAKE_POSITIVE, negative, WAKE_NEGATIVE);
+        return passed;
+    }
+
+    private static long wakeWordDetections(String clip) throws Exception {
+        WakeWordSpotter spotter = new WakeWordSpotter(WakeWordSpotter.DEFAULT_THRESHOLD, (template, score, frame) -> { });
+        spotter.enroll(Paths.get(fixture(WAKE_TEMPLATES).toURI()));
+        AudioRecorder recorder = new AudioRecorder();
+        recorder.setFrameListener(spotter);
+        try (AudioInputStream stream = AudioSystem.getAudioInputStream(fixture(clip))) {
+            recorder.process(stream);
+        }
+        return spotter.detections();
+    }
+
+    /** Fixture from the classpath, so the self-test runs from any directory. */
+    private static URL fixture(String name) {
+        URL url = SelfTest.class.getResource("fixtures/" + name);
+        if (url == null) {
+            throw new IllegalStateException("Missing test fixture fixtures/" + name + " on the classpath");
+        }
+        return url;
+    }
+
+    /**
+     * Entries written across a segment rotation read back field for field,
+     * and a last record cut short by a crash stops the reader without
+     * losing the ones before it.
+     */
+    private static boolean checkJournal() throws Exception {
+        Path directory = Files.createTempDirectory("journal-test");
+        try {
+            List<CommandJournal.Entry> written = new ArrayList<>();
+            try (CommandJournal journal = new CommandJournal(directory, 0, 8, TimeUnit.MINUTES.toMillis(1))) {
+                for (int i = 0; i < JOURNAL_ENTRIES; i++) {
+                    CommandJournal.Entry entry = new CommandJournal.Entry(1_700_000_000_000L + i,
+                        CommandJournal.Source.values()[i % CommandJournal.Source.values().length],
+                        "café command " + i + " " + "x".repeat(900), "command " + i, "intent" + (i % 7),
+                        i / 100f, i * 1000L, i * 10L, i * 100L, i);
+                    journal.append(entry);
+                    written.add(entry);
+                }
+            }
+            List<Path> segments = CommandJournal.segments(directory);
+            // A crash in the middle of the last record
+            Path last = segments.get(segments.size() - 1);
+            try (FileChannel channel = FileChannel.open(last, StandardOpenOption.WRITE)) {
+                channel.truncate(channel.size() - 10);
+            }
+
+            List<CommandJournal.Entry> read = new ArrayList<>();
+            long count = CommandJournal.read(directory, read::add);
+            boolean same = count == read.size() && read.size() == JOURNAL_ENTRIES - 1;
+            for (int i = 0; same && i < read.size(); i++) {
+                same = sameEntry(written.get(i), read.get(i));
+            }
+            boolean passed = segments.size() >= 2 && same;
+            System.out.printf(Locale.ROOT, "%s journal: %d of %d entries read back from %d segments, torn last record skipped%n",
+                passed ? "✅" : "❌", read.size(), JOURNAL_ENTRIES, segments.size());
+            return passed;
+        } finally {
+            for (Path segment : CommandJournal.segments(directory)) {
+                Files.deleteIfExists(segment);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Audio written through the file sink in pieces that split frames comes
+     * out as the same samples in WAV byte order, with a header for them.
+     */
+    private static boolean checkFileSink() throws Exception {
+        Path file = Files.createTempFile("sink-test", ".wav");
+        Files.delete(file);
+        try {
+            int total = 0;
+            for (int length : SINK_WRITES) {
+                total += length;
+            }
+            byte[] audio = new byte[total];
+            for (int i = 0; i < audio.length; i++) {
+                audio[i] = (byte) (i * 7 + 1);
+            }
+            LineAudioPlayer player = new LineAudioPlayer(new LineAudioPlayer.FileSink(file), SINK_BUFFER_MILLIS);
+            player.setAudioFormat(SINK_FORMAT);
+            player.begin(audio.length);
+            int offset = 0;
+            for (int length : SINK_WRITES) {
+                player.write(audio, offset, length);
+                offset += length;
+            }
+            player.end();
+            player.close();
+
+            // Big-endian samples become little-endian; the trailing half frame is held back
+            int frames = audio.length / SINK_FORMAT.getFrameSize() * SINK_FORMAT.getFrameSize();
+            byte[] expected = new byte[frames];
+            for (int i = 0; i < frames; i += 2) {
+                expected[i] = audio[i + 1];
+                expected[i + 1] = audio[i];
+            }
+            byte[] written;
+            AudioFormat format;
+            try (AudioInputStream in = AudioSystem.getAudioInputStream(file.toFile())) {
+                format = in.getFormat();
+                written = in.readAllBytes();
+            }
+            // Nothing past the last whole frame, on disk or in the header
+            boolean passed = Files.size(file) == WavFiles.HEADER_BYTES + expected.length
+                && Arrays.equals(expected, written) && format.getChannels() == SINK_FORMAT.getChannels()
+                && !format.isBigEndian() && format.getSampleRate() == SINK_FORMAT.getSampleRate();
+            System.out.printf(Locale.ROOT, "%s file sink: %d of %d bytes in %d writes read back as %s%n",
+                passed ? "✅" : "❌", written.length, audio.length, SINK_WRITES.length, format);
+            return passed;
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * The null sink takes as long as the audio would play, and a pause
+     * longer than its buffer in the middle of an utterance is an underrun.
+     */
+    private static boolean checkNullSink() throws Exception {
+        LineAudioPlayer player = new LineAudioPlayer(new LineAudioPlayer.NullSink(), SINK_BUFFER_MILLIS);
+        player.setAudioFormat(SINK_FORMAT);
+        int bytesPerMilli = (int) (SINK_FORMAT.getFrameRate() * SINK_FORMAT.getFrameSize() / 1000);
+
+        long started = System.nanoTime();
+        player.begin(0);
+        player.write(new byte[SINK_UTTERANCE_MILLIS * bytesPerMilli]);
+        player.end();
+        long played = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        long steadyUnderruns = player.underruns();
+
+        byte[] piece = new byte[SINK_BUFFER_MILLIS / 2 * bytesPerMilli];
+        player.begin(0);
+        player.write(piece);
+        Thread.sleep(SINK_PAUSE_MILLIS);
+        player.write(piece);
+        player.end();
+        long pausedUnderruns = player.underruns() - steadyUnderruns;
+        player.close();
+
+        boolean passed = played >= SINK_UTTERANCE_MILLIS && steadyUnderruns == 0 && pausedUnderruns == 1;
+        System.out.printf(Locale.ROOT, "%s null sink: %d ms of audio took %d ms, %d underrun(s) without a pause, %d with one%n",
+            passed ? "✅" : "❌", SINK_UTTERANCE_MILLIS, played, steadyUnderruns, pausedUnderruns);
+        return passed;
+    }
+
+    private static boolean sameEntry(CommandJournal.Entry a, CommandJournal.Entry b) {
+        return a.epochMillis == b.epochMillis && a.source == b.source && a.input.equals(b.input)
+            && a.command.equals(b.command) && a.intent.equals(b.intent) && a.confidence == b.confidence
+            && a.recognizeNanos == b.recognizeNanos && a.matchNanos == b.matchNanos
+            && a.processNanos == b.processNanos && a.renderNanos == b.renderNanos;
+    }
+}
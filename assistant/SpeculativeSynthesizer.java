@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Starts synthesizing the reply while the user is still speaking.
+ *
+ * Each interim hypothesis from the recognizer goes through
+ * CommandProcessor.previewResponses(). If it already maps to a command
+ * with a predictable reply ("what time" to the time, "open youtube" to
+ * "Opening YouTube"), that reply is rendered into the speech cache on the
+ * render voice. When the final transcript arrives, the speculation whose
+ * reply matches the final one is kept and plays straight from the cache.
+ * Every other speculation is discarded. A different transcript with the
+ * same reply ("open youtube please") still counts as a hit.
+ *
+ * Outcomes go to PipelineMetrics: hits, discards and the synthesis time
+ * saved, which is the part of each kept render done before the final
+ * transcript.
+ */
+class SpeculativeSynthesizer {
+    // Per utterance, so a long hesitant one cannot keep the render voice busy
+    private static final int MAX_SPECULATIONS = 3;
+
+    /** Replies rendered for one partial hypothesis. */
+    private static final class Speculation {
+        final List<String> responses;
+        final List<CompletableFuture<Boolean>> renders = new ArrayList<>();
+        final long startedNanos = System.nanoTime();
+        volatile long finishedNanos;
+
+        Speculation(List<String> responses) {
+            this.responses = responses;
+        }
+
+        // False when every reply was cached already or could not be rendered ahead
+        boolean rendering() {
+            for (CompletableFuture<Boolean> render : renders) {
+                if (!render.isDone() || render.getNow(false)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        long savedNanos(long now) {
+            long finished = finishedNanos;
+            return (finished != 0 ? Math.min(finished, now) : now) - startedNanos;
+        }
+    }
+
+    private final Function<String, CompletableFuture<Boolean>> prefetch;
+    private final Consumer<String> discard;
+    private final PipelineMetrics metrics;
+    private final List<Speculation> speculations = new ArrayList<>();
+    private boolean listening;
+    private String lastPartial;
+
+    SpeculativeSynthesizer(TextToSpeech tts) {
+        this(tts::prefetch, tts::discard, PipelineMetrics.GLOBAL);
+    }
+
+    /** prefetch renders a reply into the cache (true if it did); discard drops it again. */
+    SpeculativeSynthesizer(Function<String, CompletableFuture<Boolean>> prefetch, Consumer<String> discard,
+                           PipelineMetrics metrics) {
+        this.prefetch = prefetch;
+        this.discard = discard;
+        this.metrics = metrics;
+    }
+
+    /** Call before each recognition. */
+    synchronized void begin() {
+        resolve(null);
+        listening = true;
+    }
+
+    /** Interim hypothesis; called on the recognizer's reader thread. */
+    synchronized void onPartial(String text) {
+        String command = text.trim().toLowerCase(Locale.ROOT);
+        if (!listening || command.equals(lastPartial) || speculations.size() >= MAX_SPECULATIONS) {
+            return;
+        }
+        lastPartial = command;
+        List<String> responses = CommandProcessor.previewResponses(command);
+        if (responses == null || responses.isEmpty()) {
+            return;
+        }
+        for (Speculation speculation : speculations) {
+            if (speculation.responses.equals(responses)) {
+                return;
+            }
+        }
+        Speculation speculation = new Speculation(responses);
+        for (String response : responses) {
+            // A render that fails (FreeTTS throwing on the render voice) counts as not rendered
+            speculation.renders.add(prefetch.apply(response).exceptionally(error -> false));
+        }
+        CompletableFuture.allOf(speculation.renders.toArray(new CompletableFuture<?>[0]))
+            .whenComplete((done, error) -> speculation.finishedNanos = System.nanoTime());
+        speculations.add(speculation);
+    }
+
+    /**
+     * Final transcript, or null if recognition failed: keeps the
+     * speculation with the same reply and discards the rest.
+     */
+    synchronized void resolve(String transcript) {
+        listening = false;
+        lastPartial = null;
+        long now = System.nanoTime();
+        List<String> expected = transcript == null ? null
+            : CommandProcessor.previewResponses(transcript.trim().toLowerCase(Locale.ROOT));
+        boolean used = false;
+        for (Speculation speculation : speculations) {
+            if (!speculation.rendering()) {
+                continue;
+            }
+            if (!used && speculation.responses.equals(expected)) {
+                used = true;
+                metrics.recordSpeculation(true, speculation.savedNanos(now));
+                continue;
+            }
+            metrics.recordSpeculation(false, 0);
+            for (int i = 0; i < speculation.responses.size(); i++) {
+                String response = speculation.responses.get(i);
+                if (expected == null || !expected.contains(response)) {
+                    // Renders still running are dropped once they land in the cache
+                    speculation.renders.get(i).thenAccept(rendered -> {
+                        if (rendered) {
+                            discard.accept(response);
+                        }
+                    });
+                }
+            }
+        }
+        speculations.clear();
+    }
+}
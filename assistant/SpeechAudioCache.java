@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Cache of synthesized speech, keyed by phrase and voice settings.
+ *
+ * Entries are evicted least-recently-used once the total PCM size exceeds the
+ * byte budget. The cache can be saved to a file and reopened with a
+ * read-only memory map, so a restart replays known phrases straight from the
+ * mapped pages instead of running FreeTTS again.
+ *
+ * Windows will not replace a file that is still mapped, so a save over the
+ * file this cache loaded goes to a ".next" file beside it instead; the next
+ * load() moves that into place before mapping.
+ */
+class SpeechAudioCache {
+    private static final int FILE_MAGIC = 0x54545343; // "TTSC"
+    private static final int FILE_VERSION = 1;
+
+    /** Cached PCM and the format it was rendered in. */
+    static final class Entry {
+        final AudioFormat format;
+        final ByteBuffer pcm;
+
+        Entry(AudioFormat format, ByteBuffer pcm) {
+            this.format = format;
+            this.pcm = pcm.asReadOnlyBuffer();
+        }
+
+        int size() {
+            return pcm.remaining();
+        }
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // File the loaded entries are mapped from; null if nothing was loaded
+    private Path mapped;
+
+    SpeechAudioCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Cache key for a phrase spoken with the given voice settings. */
+    static String key(String text, String voiceName, float rate, float pitch) {
+        return voiceName + "|" + rate + "|" + pitch + "|" + text;
+    }
+
+    synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    synchronized void put(String key, AudioFormat format, byte[] pcm) {
+        put(key, new Entry(format, ByteBuffer.wrap(pcm)));
+    }
+
+    synchronized void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.size();
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        if (entry.size() > maxBytes) {
+            return;
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+        bytes += entry.size();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> victim = eldest.next();
+            bytes -= victim.getValue().size();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    long hits() {
+        return hits.get();
+    }
+
+    long misses() {
+        return misses.get();
+    }
+
+    synchronized String stats() {
+        long total = hits.get() + misses.get();
+        double hitRate = total == 0 ? 0 : 100.0 * hits.get() / total;
+        return String.format("%d phrases, %d KB of %d KB, %d hits, %d misses (%.1f%% hit rate), %d evictions",
+            entries.size(), bytes / 1024, maxBytes / 1024, hits.get(), misses.get(), hitRate, evictions.get());
+    }
+
+    /**
+     * Maps a cache file written by {@link #save} and adds its entries. The PCM
+     * of loaded entries stays in the mapped pages; nothing is copied.
+     */
+    synchronized int load(Path file) throws IOException {
+        Path next = pending(file);
+        if (Files.exists(next)) {
+            Files.move(next, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        MappedByteBuffer map;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (map.remaining() < 12 || map.getInt() != FILE_MAGIC || map.getInt() != FILE_VERSION) {
+            throw new IOException("Not a speech cache file: " + file);
+        }
+
+        int count = map.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] keyBytes = new byte[map.getInt()];
+            map.get(keyBytes);
+            AudioFormat format = new AudioFormat(map.getFloat(), map.getInt(), map.getInt(),
+                map.get() != 0, map.get() != 0);
+            int length = map.getInt();
+            ByteBuffer pcm = map.slice();
+            pcm.limit(length);
+            map.position(map.position() + length);
+            put(new String(keyBytes, StandardCharsets.UTF_8), new Entry(format, pcm));
+        }
+        mapped = file.toAbsolutePath().normalize();
+        return count;
+    }
+
+    /**
+     * Writes all entries, least recently used first, to a new cache file. If
+     * this cache has file mapped, it is written to the ".next" file instead.
+     */
+    synchronized void save(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(12);
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(entries.size()).flip();
+            writeFully(channel, header);
+
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                byte[] keyBytes = e.getKey().getBytes(StandardCharsets.UTF_8);
+                AudioFormat format = e.getValue().format;
+                ByteBuffer record = ByteBuffer.allocate(4 + keyBytes.length + 4 + 4 + 4 + 1 + 1 + 4);
+                record.putInt(keyBytes.length).put(keyBytes)
+                    .putFloat(format.getSampleRate())
+                    .putInt(format.getSampleSizeInBits())
+                    .putInt(format.getChannels())
+                    .put((byte) (format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED ? 1 : 0))
+                    .put((byte) (format.isBigEndian() ? 1 : 0))
+                    .putInt(e.getValue().size())
+                    .flip();
+                writeFully(channel, record);
+                writeFully(channel, e.getValue().pcm.duplicate());
+            }
+        }
+        Path target = file.toAbsolutePath().normalize().equals(mapped) ? pending(file) : file;
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static Path pending(Path file) {
+        return file.resolveSibling(file.getFileName() + ".next");
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
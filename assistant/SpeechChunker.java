@@ -0,0 +1,60 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a response into pieces that can be synthesized one after another,
+ * so the first piece plays while the rest is still being rendered.
+ *
+ * Text is always split after sentence punctuation (. ! ?) followed by a
+ * space, and after clause punctuation (, ; :) once the current piece is at
+ * least MIN_CLAUSE_CHARS long. Pieces shorter than MIN_CHUNK_CHARS are
+ * joined to the next so FreeTTS never gets a fragment too short to phrase
+ * naturally.
+ */
+final class SpeechChunker {
+    static final int MIN_CHUNK_CHARS = 12;
+    static final int MIN_CLAUSE_CHARS = 24;
+
+    private SpeechChunker() {
+    }
+
+    static List<String> split(String text) {
+        List<String> chunks = new ArrayList<>();
+        int start = 0;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            boolean boundary = i + 1 == length || Character.isWhitespace(text.charAt(i + 1));
+            if (!boundary) {
+                continue;
+            }
+            int pieceLength = i + 1 - start;
+            boolean sentence = c == '.' || c == '!' || c == '?';
+            boolean clause = (c == ',' || c == ';' || c == ':') && pieceLength >= MIN_CLAUSE_CHARS;
+            if ((sentence || clause) && pieceLength >= MIN_CHUNK_CHARS) {
+                add(chunks, text.substring(start, i + 1));
+                start = i + 1;
+            }
+        }
+        if (start < length) {
+            String rest = text.substring(start).trim();
+            if (rest.isEmpty()) {
+                return chunks;
+            }
+            // A short tail is folded into the previous piece rather than spoken on its own
+            if (rest.length() < MIN_CHUNK_CHARS && !chunks.isEmpty()) {
+                chunks.set(chunks.size() - 1, chunks.get(chunks.size() - 1) + " " + rest);
+            } else {
+                add(chunks, rest);
+            }
+        }
+        return chunks;
+    }
+
+    private static void add(List<String> chunks, String piece) {
+        String trimmed = piece.trim();
+        if (!trimmed.isEmpty()) {
+            chunks.add(trimmed);
+        }
+    }
+}
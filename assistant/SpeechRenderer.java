@@ -0,0 +1,75 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Synthesizes replies into WAV bytes instead of playing them, for clients
+ * that play the audio themselves.
+ *
+ * Renders run in parallel on a VoicePool; repeated phrases come from a
+ * SpeechAudioCache without touching a voice. When no voice can be
+ * allocated the renderer still works but returns no audio.
+ */
+class SpeechRenderer {
+    private static final long DEFAULT_CACHE_BYTES = 16L * 1024 * 1024;
+
+    private final VoicePool pool;
+    private final SpeechAudioCache cache = new SpeechAudioCache(
+        Long.getLong("assistant.audioCache.maxBytes", DEFAULT_CACHE_BYTES));
+
+    private SpeechRenderer(VoicePool pool) {
+        this.pool = pool;
+    }
+
+    /** Renderer over a pool of kevin16 voices, or a silent one if FreeTTS has no voice. */
+    static SpeechRenderer create() {
+        try {
+            VoicePool pool = VoicePool.fromSystemProperties();
+            System.out.println("🔊 Voice pool: up to " + pool.max() + " voices");
+            return new SpeechRenderer(pool);
+        } catch (RuntimeException | Error e) {
+            // FreeTTS reports a missing voice directory as an Error
+            System.err.println("⚠️  Could not allocate FreeTTS voice (" + e + "); replies will be text only");
+        }
+        return new SpeechRenderer(null);
+    }
+
+    boolean hasVoice() {
+        return pool != null;
+    }
+
+    /** Renders text as a WAV file image; empty when there is no voice or nothing to say. */
+    byte[] renderWav(String text) throws IOException {
+        if (pool == null || text == null || text.trim().isEmpty()) {
+            return new byte[0];
+        }
+        String key = pool.cacheKey(text);
+        SpeechAudioCache.Entry entry = cache.get(key);
+        if (entry == null) {
+            VoicePool.Rendered rendered;
+            try {
+                rendered = pool.render(text);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a voice");
+            }
+            if (rendered == null) {
+                return new byte[0];
+            }
+            cache.put(key, rendered.format, rendered.pcm);
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.SYNTHESIZE, rendered.renderNanos);
+            return WavFiles.toBytes(rendered.format, ByteBuffer.wrap(rendered.pcm));
+        }
+        return WavFiles.toBytes(entry.format, entry.pcm);
+    }
+
+    String cacheStats() {
+        return cache.stats();
+    }
+
+    void close() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+}
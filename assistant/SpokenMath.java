@@ -0,0 +1,553 @@
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Arithmetic on spoken or typed expressions for CommandProcessor.handleMath.
+ *
+ * Understands digits and number words ("twenty five", "one hundred and
+ * five", "three point one four"), operator words and symbols, division,
+ * powers, percentages, square roots and parentheses, plus the verb forms
+ * "divide 10 by 4", "multiply 3 by 5", "add 2 and 3" and "subtract 4 from
+ * 9". Evaluation uses BigDecimal so results like 0.1 plus 0.2 are exact.
+ *
+ * Parsed expressions are kept in a small LRU cache, so a repeated query
+ * only pays for evaluation.
+ */
+class SpokenMath {
+    private static final MathContext PRECISION = MathContext.DECIMAL64;
+    private static final int CACHE_SIZE = 128;
+    // Parse and evaluate recurse once per level, so both are bounded well below the stack size
+    private static final int MAX_NESTING = 32;
+    private static final int MAX_TOKENS = 256;
+
+    /** Thrown for input that is not an expression or cannot be evaluated. */
+    static class MathException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        MathException(String message) {
+            super(message);
+        }
+    }
+
+    /** A parsed expression, immutable and safe to share. */
+    static final class Expression {
+        final String spoken;
+        private final Node root;
+
+        Expression(String spoken, Node root) {
+            this.spoken = spoken;
+            this.root = root;
+        }
+
+        BigDecimal evaluate() throws MathException {
+            try {
+                return root.evaluate().round(PRECISION);
+            } catch (ArithmeticException e) {
+                throw new MathException(e.getMessage());
+            }
+        }
+    }
+
+    private static final Map<String, Expression> CACHE = new LinkedHashMap<String, Expression>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Expression> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    /** Parses text, reusing a cached parse when the same text was seen before. */
+    static Expression parse(String text) throws MathException {
+        String key = text.trim().toLowerCase();
+        synchronized (CACHE) {
+            Expression cached = CACHE.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Expression parsed = parseUncached(key);
+        synchronized (CACHE) {
+            CACHE.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    static Expression parseUncached(String text) throws MathException {
+        List<Token> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            throw new MathException("empty expression");
+        }
+        if (tokens.size() > MAX_TOKENS) {
+            throw new MathException("expression is too long");
+        }
+        Parser parser = new Parser(tokens);
+        Node root = parser.parseStatement();
+        if (parser.position != tokens.size()) {
+            throw new MathException("unexpected '" + tokens.get(parser.position).text + "'");
+        }
+        StringJoiner spoken = new StringJoiner(" ");
+        for (Token token : tokens) {
+            spoken.add(token.text);
+        }
+        return new Expression(spoken.toString(), root);
+    }
+
+    /** Plain-language rendering of a result, without trailing zeros. */
+    static String format(BigDecimal value) {
+        BigDecimal rounded = value.setScale(Math.min(Math.max(value.scale(), 0), 10), RoundingMode.HALF_UP);
+        String plain = rounded.stripTrailingZeros().toPlainString();
+        return plain.equals("-0") ? "0" : plain;
+    }
+
+    // ---- Tokens ----
+
+    private enum Kind { NUMBER, PLUS, MINUS, TIMES, DIVIDE, MOD, POWER, SQUARED, CUBED, PERCENT, PERCENT_OF, SQRT,
+        LPAREN, RPAREN, VERB, SEPARATOR }
+
+    private static final class Token {
+        final Kind kind;
+        final String text;
+        final BigDecimal value;
+
+        Token(Kind kind, String text, BigDecimal value) {
+            this.kind = kind;
+            this.text = text;
+            this.value = value;
+        }
+    }
+
+    // Multi-word phrases first so they win over their single-word prefixes
+    private static final String[][] PHRASES = {
+        {"raised to the power of", "POWER", "to the power of"},
+        {"to the power of", "POWER", "to the power of"},
+        {"multiplied by", "TIMES", "times"},
+        {"divided by", "DIVIDE", "divided by"},
+        {"square root of", "SQRT", "the square root of"},
+        {"percent of", "PERCENT_OF", "percent of"},
+        {"open bracket", "LPAREN", "("},
+        {"close bracket", "RPAREN", ")"},
+        {"raised to", "POWER", "to the power of"},
+    };
+
+    private static final Map<String, String[]> WORDS = new HashMap<>();
+    private static final Map<String, Integer> SMALL_NUMBERS = new HashMap<>();
+    private static final Map<String, Integer> TENS = new HashMap<>();
+    private static final Map<String, Long> SCALES = new HashMap<>();
+    private static final Pattern WORD_HYPHEN = Pattern.compile("([a-z])-([a-z])");
+    private static final Pattern DIGIT_GROUPS = Pattern.compile("(\\d),(\\d{3})");
+    private static final Pattern SYMBOLS = Pattern.compile("([+\\-*/^()%×÷=?])");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern DECIMAL = Pattern.compile("\\d+(\\.\\d+)?|\\.\\d+");
+    private static final Set<String> FILLER = Set.of("the", "please", "equals", "equal", "is", "?", "=");
+
+    static {
+        String[][] words = {
+            {"+", "PLUS", "plus"}, {"plus", "PLUS", "plus"},
+            {"-", "MINUS", "minus"}, {"minus", "MINUS", "minus"}, {"negative", "MINUS", "minus"},
+            {"*", "TIMES", "times"}, {"x", "TIMES", "times"}, {"×", "TIMES", "times"}, {"times", "TIMES", "times"},
+            {"/", "DIVIDE", "divided by"}, {"÷", "DIVIDE", "divided by"}, {"over", "DIVIDE", "divided by"},
+            {"mod", "MOD", "modulo"}, {"modulo", "MOD", "modulo"},
+            {"^", "POWER", "to the power of"}, {"power", "POWER", "to the power of"},
+            {"squared", "SQUARED", "squared"}, {"cubed", "CUBED", "cubed"},
+            {"%", "PERCENT", "percent"}, {"percent", "PERCENT", "percent"},
+            {"sqrt", "SQRT", "the square root of"},
+            {"(", "LPAREN", "("}, {")", "RPAREN", ")"},
+            {"divide", "VERB", "divide"}, {"multiply", "VERB", "multiply"},
+            {"add", "VERB", "add"}, {"subtract", "VERB", "subtract"},
+            {"by", "SEPARATOR", "by"}, {"and", "SEPARATOR", "and"}, {"to", "SEPARATOR", "to"},
+            {"from", "SEPARATOR", "from"},
+        };
+        for (String[] word : words) {
+            WORDS.put(word[0], word);
+        }
+
+        String[] small = {"zero", "one", "two", "three", "four", "five", "six", "seven", "eight", "nine", "ten",
+            "eleven", "twelve", "thirteen", "fourteen", "fifteen", "sixteen", "seventeen", "eighteen", "nineteen"};
+        for (int i = 0; i < small.length; i++) {
+            SMALL_NUMBERS.put(small[i], i);
+        }
+        String[] tens = {"twenty", "thirty", "forty", "fifty", "sixty", "seventy", "eighty", "ninety"};
+        for (int i = 0; i < tens.length; i++) {
+            TENS.put(tens[i], (i + 2) * 10);
+        }
+        SCALES.put("hundred", 100L);
+        SCALES.put("thousand", 1_000L);
+        SCALES.put("million", 1_000_000L);
+        SCALES.put("billion", 1_000_000_000L);
+    }
+
+    private static List<Token> tokenize(String text) throws MathException {
+        String spaced = WORD_HYPHEN.matcher(text).replaceAll("$1 $2");      // twenty-five
+        spaced = DIGIT_GROUPS.matcher(spaced).replaceAll("$1$2");          // 1,000
+        spaced = SYMBOLS.matcher(spaced).replaceAll(" $1 ");
+        List<String> words = new ArrayList<>(Arrays.asList(WHITESPACE.split(spaced.trim())));
+        words.removeIf(String::isEmpty);
+
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < words.size()) {
+            String[] phrase = matchPhrase(words, i);
+            if (phrase != null) {
+                tokens.add(new Token(Kind.valueOf(phrase[1]), phrase[2], null));
+                i += phrase[0].split(" ").length;
+                continue;
+            }
+
+            String word = words.get(i);
+            if (DECIMAL.matcher(word).matches()) {
+                tokens.add(new Token(Kind.NUMBER, word, new BigDecimal(word)));
+                i++;
+            } else if (isNumberWord(word)) {
+                i = readNumberWords(words, i, tokens);
+            } else if (WORDS.containsKey(word)) {
+                String[] known = WORDS.get(word);
+                tokens.add(new Token(Kind.valueOf(known[1]), known[2], null));
+                i++;
+            } else if (FILLER.contains(word)) {
+                i++;
+            } else {
+                throw new MathException("unknown word '" + word + "'");
+            }
+        }
+        return tokens;
+    }
+
+    private static String[] matchPhrase(List<String> words, int start) {
+        for (String[] phrase : PHRASES) {
+            if (!phrase[0].startsWith(words.get(start))) {
+                continue;
+            }
+            String[] parts = phrase[0].split(" ");
+            if (start + parts.length > words.size()) {
+                continue;
+            }
+            boolean match = true;
+            for (int k = 0; k < parts.length && match; k++) {
+                match = parts[k].equals(words.get(start + k));
+            }
+            if (match) {
+                return phrase;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNumberWord(String word) {
+        return SMALL_NUMBERS.containsKey(word) || TENS.containsKey(word) || SCALES.containsKey(word);
+    }
+
+    /** What a number word contributes, which decides the words that may follow it. */
+    private enum NumberWord {
+        NONE, ZERO, UNIT, TEEN, TENS, HUNDRED, SCALE, AND;
+
+        static NumberWord of(String word) {
+            Integer small = SMALL_NUMBERS.get(word);
+            if (small != null) {
+                return small == 0 ? ZERO : small < 10 ? UNIT : TEEN;
+            }
+            if (SpokenMath.TENS.containsKey(word)) {
+                return TENS;
+            }
+            if (word.equals("hundred")) {
+                return HUNDRED;
+            }
+            return SCALES.containsKey(word) ? SCALE : null;
+        }
+
+        // "twenty five", "five hundred", "hundred and one", but not "one two" or "hundred hundred"
+        boolean canFollow(NumberWord previous) {
+            switch (this) {
+                case ZERO:
+                    return previous == NONE;
+                case UNIT:
+                    return previous == NONE || previous == TENS || previous == HUNDRED || previous == SCALE
+                        || previous == AND;
+                case TEEN:
+                case TENS:
+                    return previous == NONE || previous == HUNDRED || previous == SCALE || previous == AND;
+                case HUNDRED:
+                    return previous == NONE || previous == UNIT || previous == TEEN || previous == TENS;
+                case SCALE:
+                    return previous == NONE || previous == UNIT || previous == TEEN || previous == TENS
+                        || previous == HUNDRED;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    // Reads "one hundred and twenty five point five" style numbers. A word that cannot follow the
+    // one before it is an error rather than being added on, so "five twenty" is not 25
+    private static int readNumberWords(List<String> words, int i, List<Token> tokens) throws MathException {
+        long total = 0;
+        long current = 0;
+        NumberWord last = NumberWord.NONE;
+        String previous = null;
+        // Scales must get smaller: "one million two thousand", not "two thousand one million"
+        long lastScale = Long.MAX_VALUE;
+        StringBuilder fraction = new StringBuilder();
+
+        try {
+            while (i < words.size()) {
+                String word = words.get(i);
+                NumberWord kind = NumberWord.of(word);
+                if (kind != null) {
+                    if (!kind.canFollow(last)) {
+                        throw new MathException("'" + word + "' cannot follow '" + previous + "'");
+                    }
+                    switch (kind) {
+                        case TENS:
+                            current = Math.addExact(current, TENS.get(word));
+                            break;
+                        case HUNDRED:
+                            if (current >= 100) {
+                                throw new MathException("'hundred' cannot follow '" + previous + "'");
+                            }
+                            current = (current == 0 ? 1 : current) * 100;
+                            break;
+                        case SCALE:
+                            long scale = SCALES.get(word);
+                            if (scale >= lastScale) {
+                                throw new MathException("'" + word + "' cannot follow a larger or equal scale");
+                            }
+                            total = Math.addExact(total, Math.multiplyExact(current == 0 ? 1 : current, scale));
+                            current = 0;
+                            lastScale = scale;
+                            break;
+                        default:
+                            current = Math.addExact(current, SMALL_NUMBERS.get(word));
+                    }
+                    last = kind;
+                    previous = word;
+                } else if (word.equals("and") && (last == NumberWord.HUNDRED || last == NumberWord.SCALE)
+                        && i + 1 < words.size() && continuesAfterAnd(words.get(i + 1))) {
+                    // "one hundred and five"; plain "three and four" is left to the verb form
+                    last = NumberWord.AND;
+                } else if (word.equals("point") && i + 1 < words.size()
+                        && SMALL_NUMBERS.containsKey(words.get(i + 1))) {
+                    i++;
+                    while (i < words.size() && SMALL_NUMBERS.containsKey(words.get(i))
+                            && SMALL_NUMBERS.get(words.get(i)) < 10) {
+                        fraction.append(SMALL_NUMBERS.get(words.get(i)));
+                        i++;
+                    }
+                    break;
+                } else {
+                    break;
+                }
+                i++;
+            }
+            total = Math.addExact(total, current);
+        } catch (ArithmeticException e) {
+            throw new MathException("number is too large");
+        }
+
+        String digits = total + (fraction.length() > 0 ? "." + fraction : "");
+        tokens.add(new Token(Kind.NUMBER, digits, new BigDecimal(digits)));
+        return i;
+    }
+
+    private static boolean continuesAfterAnd(String word) {
+        NumberWord next = NumberWord.of(word);
+        return next != null && next.canFollow(NumberWord.AND);
+    }
+
+    // ---- Syntax tree ----
+
+    private interface Node {
+        BigDecimal evaluate();
+    }
+
+    private static Node number(BigDecimal value) {
+        return () -> value;
+    }
+
+    private static Node binary(Kind op, Node left, Node right) {
+        switch (op) {
+            case PLUS: return () -> left.evaluate().add(right.evaluate(), PRECISION);
+            case MINUS: return () -> left.evaluate().subtract(right.evaluate(), PRECISION);
+            case TIMES: return () -> left.evaluate().multiply(right.evaluate(), PRECISION);
+            case DIVIDE: return () -> {
+                BigDecimal divisor = right.evaluate();
+                if (divisor.signum() == 0) {
+                    throw new ArithmeticException("division by zero");
+                }
+                return left.evaluate().divide(divisor, PRECISION);
+            };
+            case MOD: return () -> {
+                BigDecimal divisor = right.evaluate();
+                if (divisor.signum() == 0) {
+                    throw new ArithmeticException("division by zero");
+                }
+                return left.evaluate().remainder(divisor, PRECISION);
+            };
+            case PERCENT_OF: return () -> left.evaluate().multiply(right.evaluate(), PRECISION)
+                .divide(BigDecimal.valueOf(100), PRECISION);
+            default: return () -> power(left.evaluate(), right.evaluate());
+        }
+    }
+
+    private static BigDecimal power(BigDecimal base, BigDecimal exponent) {
+        if (exponent.stripTrailingZeros().scale() <= 0 && exponent.abs().compareTo(BigDecimal.valueOf(999)) <= 0) {
+            return base.pow(exponent.intValueExact(), PRECISION);
+        }
+        double result = Math.pow(base.doubleValue(), exponent.doubleValue());
+        if (Double.isNaN(result) || Double.isInfinite(result)) {
+            throw new ArithmeticException("result is not a real number");
+        }
+        return new BigDecimal(result, PRECISION);
+    }
+
+    private static Node squareRoot(Node operand) {
+        return () -> {
+            BigDecimal value = operand.evaluate();
+            if (value.signum() < 0) {
+                throw new ArithmeticException("square root of a negative number");
+            }
+            return value.sqrt(PRECISION);
+        };
+    }
+
+    // ---- Parser: precedence climbing over the token list ----
+
+    private static final class Parser {
+        private final List<Token> tokens;
+        int position;
+        // Open parentheses and prefix operators around the current token
+        private int nesting;
+
+        Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        // statement := VERB expr SEPARATOR expr | expr
+        Node parseStatement() throws MathException {
+            Token verb = peek();
+            if (verb == null || verb.kind != Kind.VERB) {
+                return parseSum();
+            }
+            position++;
+            Node first = parseSum();
+            expect(Kind.SEPARATOR);
+            Node second = parseSum();
+            switch (verb.text) {
+                case "divide": return binary(Kind.DIVIDE, first, second);
+                case "multiply": return binary(Kind.TIMES, first, second);
+                case "add": return binary(Kind.PLUS, first, second);
+                default: return binary(Kind.MINUS, second, first); // subtract a from b
+            }
+        }
+
+        // sum := product (('+' | '-') product)*
+        private Node parseSum() throws MathException {
+            Node left = parseProduct();
+            while (at(Kind.PLUS) || at(Kind.MINUS)) {
+                Kind op = tokens.get(position++).kind;
+                left = binary(op, left, parseProduct());
+            }
+            return left;
+        }
+
+        // product := unary (('*' | '/' | 'mod' | 'percent of') unary)*
+        private Node parseProduct() throws MathException {
+            Node left = parseUnary();
+            while (at(Kind.TIMES) || at(Kind.DIVIDE) || at(Kind.MOD) || at(Kind.PERCENT_OF)) {
+                Kind op = tokens.get(position++).kind;
+                left = binary(op, left, parseUnary());
+            }
+            return left;
+        }
+
+        // unary := '-' unary | 'sqrt' unary | power
+        private Node parseUnary() throws MathException {
+            if (at(Kind.MINUS)) {
+                position++;
+                Node operand = nested();
+                return () -> operand.evaluate().negate();
+            }
+            if (at(Kind.SQRT)) {
+                position++;
+                return squareRoot(nested());
+            }
+            return parsePower();
+        }
+
+        // The operand of a prefix operator or '^', one level deeper
+        private Node nested() throws MathException {
+            if (++nesting > MAX_NESTING) {
+                throw new MathException("expression is nested too deeply");
+            }
+            Node node = parseUnary();
+            nesting--;
+            return node;
+        }
+
+        // power := postfix ('^' unary)?   (right associative)
+        private Node parsePower() throws MathException {
+            Node base = parsePostfix();
+            if (at(Kind.POWER)) {
+                position++;
+                return binary(Kind.POWER, base, nested());
+            }
+            return base;
+        }
+
+        // postfix := primary ('squared' | 'cubed' | 'percent')*
+        private Node parsePostfix() throws MathException {
+            Node node = parsePrimary();
+            while (at(Kind.SQUARED) || at(Kind.CUBED) || at(Kind.PERCENT)) {
+                Kind op = tokens.get(position++).kind;
+                Node operand = node;
+                if (op == Kind.PERCENT) {
+                    node = () -> operand.evaluate().divide(BigDecimal.valueOf(100), PRECISION);
+                } else {
+                    int exponent = op == Kind.SQUARED ? 2 : 3;
+                    node = () -> operand.evaluate().pow(exponent, PRECISION);
+                }
+            }
+            return node;
+        }
+
+        // primary := NUMBER | '(' sum ')'
+        private Node parsePrimary() throws MathException {
+            Token token = peek();
+            if (token == null) {
+                throw new MathException("expression ends too early");
+            }
+            if (token.kind == Kind.NUMBER) {
+                position++;
+                return number(token.value);
+            }
+            if (token.kind == Kind.LPAREN) {
+                position++;
+                if (++nesting > MAX_NESTING) {
+                    throw new MathException("expression is nested too deeply");
+                }
+                Node inner = parseSum();
+                expect(Kind.RPAREN);
+                nesting--;
+                return inner;
+            }
+            throw new MathException("expected a number but found '" + token.text + "'");
+        }
+
+        private Token peek() {
+            return position < tokens.size() ? tokens.get(position) : null;
+        }
+
+        private boolean at(Kind kind) {
+            return position < tokens.size() && tokens.get(position).kind == kind;
+        }
+
+        private void expect(Kind kind) throws MathException {
+            if (!at(kind)) {
+                Token token = peek();
+                throw new MathException("expected " + kind.name().toLowerCase()
+                    + (token == null ? " at the end" : " but found '" + token.text + "'"));
+            }
+            position++;
+        }
+    }
+}
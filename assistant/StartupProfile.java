@@ -0,0 +1,164 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Fast-start packaging with an AppCDS archive.
+ *
+ * cds.bat packs the compiled classes into assistant.jar and runs
+ * Main --warmup with -XX:ArchiveClassesAtExit=assistant.jsa. The warm-up
+ * loads the voice, speaks the greeting into a null sink, renders a few
+ * common replies and runs typical commands headless, so the archive holds
+ * the classes of FreeTTS, the lexicon, the audio path and command
+ * matching. run.bat then starts with -XX:SharedArchiveFile=assistant.jsa,
+ * which maps those classes instead of loading, parsing and verifying them
+ * from the jars again. The JVM checks the jars against the archive and
+ * ignores the archive, with a warning, if they changed. compile.bat
+ * deletes it because new classes make it stale.
+ *
+ * Main --startup-compare [runs] measures the gain. It starts the
+ * assistant in fresh JVMs without CDS, with the JDK's default archive (a
+ * plain run.bat launch) and with assistant.jsa. Each child quits at its
+ * first prompt once the voice is ready, and the medians are printed.
+ */
+class StartupProfile {
+    static final String ARCHIVE = "assistant.jsa";
+    static final String PROBE_PROPERTY = "assistant.startup.probe";
+
+    private static final int DEFAULT_RUNS = 5;
+    private static final int WARMUP_RENDERS = 4;
+    private static final long PROBE_TIMEOUT_SECONDS = 60;
+    // Typical commands, covering exact, fuzzy, math, search and unknown matches; nothing is launched
+    private static final List<String> TRAINING_COMMANDS = Arrays.asList(
+        "what time is it", "what is the date", "open youtube", "open calculater", "calculate 5 plus 3",
+        "what is 2 to the power of 8", "search for java programming", "tell me a joke", "flip a coin",
+        "help", "system info", "something unknown");
+    private static final Pattern PROBE_LINE = Pattern.compile(
+        "startup-probe jvm=(\\d+) prompt=(\\d+) voice=(-?\\d+)");
+
+    /** Main --warmup: the training run for -XX:ArchiveClassesAtExit. */
+    static void warmup() throws Exception {
+        long started = System.nanoTime();
+        // Silent: the archive only needs the classes on the playback path loaded
+        if (System.getProperty("assistant.audio.sink") == null) {
+            System.setProperty("assistant.audio.sink", "null");
+        }
+        System.setProperty("freetts.voices", "com.sun.speech.freetts.en.us.cmu_us_kal.KevinVoiceDirectory");
+        TextToSpeech tts = new TextToSpeech();
+        CommandProcessor processor = CommandProcessor.headless();
+        for (String command : TRAINING_COMMANDS) {
+            BatchRunner.toJson(processor.processCommand(command));
+        }
+        try {
+            tts.ready().join();
+            tts.speak(CommandProcessor.GREETING);
+            List<String> responses = CommandProcessor.staticResponses();
+            for (String response : responses.subList(0, Math.min(WARMUP_RENDERS, responses.size()))) {
+                tts.prefetch(response).join();
+            }
+            tts.awaitIdle(TimeUnit.SECONDS.toMillis(PROBE_TIMEOUT_SECONDS));
+        } catch (CompletionException e) {
+            System.err.println("⚠️  No voice to warm up; the archive will only cover command matching");
+        }
+        tts.cleanup();
+        System.out.printf(Locale.ROOT, "🏋️  Warm-up finished in %.0f ms%n", (System.nanoTime() - started) / 1e6);
+    }
+
+    /** Main --startup-compare [runs] */
+    static void compare(String[] args) throws Exception {
+        int runs = args.length >= 2 ? Integer.parseInt(args[1]) : DEFAULT_RUNS;
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("no CDS", Collections.singletonList("-Xshare:off"));
+        modes.put("default CDS", Collections.emptyList());
+        if (new File(ARCHIVE).isFile()) {
+            modes.put("AppCDS", Collections.singletonList("-XX:SharedArchiveFile=" + ARCHIVE));
+        } else {
+            System.out.println("⚠️  No " + ARCHIVE + " here; run cds.bat first to include AppCDS");
+        }
+        Map<String, List<long[]>> results = new LinkedHashMap<>();
+        for (String mode : modes.keySet()) {
+            results.put(mode, new ArrayList<>());
+        }
+        // Modes take turns, so a slow stretch of the machine does not favour one of them
+        for (int run = 0; run < runs; run++) {
+            for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+                long[] sample = probe(mode.getValue());
+                if (sample != null) {
+                    results.get(mode.getKey()).add(sample);
+                }
+            }
+        }
+        System.out.printf(Locale.ROOT, "⏱️  Startup, median of %d cold launches (ms since the process started)%n", runs);
+        System.out.printf(Locale.ROOT, "   %-12s %8s %8s %8s %8s%n", "mode", "main", "prompt", "voice", "exited");
+        for (Map.Entry<String, List<long[]>> mode : results.entrySet()) {
+            List<long[]> samples = mode.getValue();
+            if (samples.isEmpty()) {
+                System.out.printf(Locale.ROOT, "   %-12s (no successful launch)%n", mode.getKey());
+                continue;
+            }
+            System.out.printf(Locale.ROOT, "   %-12s %8d %8d %8s %8d%n", mode.getKey(),
+                median(samples, 0), median(samples, 1),
+                median(samples, 2) < 0 ? "-" : String.valueOf(median(samples, 2)), median(samples, 3));
+        }
+    }
+
+    /**
+     * Starts the assistant in a new JVM that quits at its first prompt.
+     * Returns the times to main, to the prompt and to a ready voice (-1 if
+     * it failed), all from JVM start, and the wall time until the process
+     * exited; null if the launch failed.
+     */
+    private static long[] probe(List<String> jvmOptions) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        command.addAll(jvmOptions);
+        command.addAll(Arrays.asList("-D" + PROBE_PROPERTY + "=true", "-Dassistant.recognizer=none",
+            "-Dassistant.audio.sink=null", "-Dassistant.shutdown.drainMillis=0",
+            "-cp", System.getProperty("java.class.path"), "Main"));
+        long started = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true)
+            .redirectInput(ProcessBuilder.Redirect.PIPE).start();
+        process.getOutputStream().close();
+        long[] sample = null;
+        try (BufferedReader out = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) {
+                Matcher probe = PROBE_LINE.matcher(line);
+                if (probe.find()) {
+                    long jvm = Long.parseLong(probe.group(1));
+                    long voice = Long.parseLong(probe.group(3));
+                    sample = new long[] {jvm, jvm + Long.parseLong(probe.group(2)), voice < 0 ? -1 : jvm + voice, 0};
+                }
+            }
+        }
+        if (!process.waitFor(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            process.destroyForcibly();
+            return null;
+        }
+        if (sample != null) {
+            sample[3] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        } else {
+            System.err.println("⚠️  Launch with " + jvmOptions + " printed no startup timing");
+        }
+        return sample;
+    }
+
+    private static long median(List<long[]> samples, int column) {
+        long[] values = samples.stream().mapToLong(sample -> sample[column]).sorted().toArray();
+        return values[values.length / 2];
+    }
+}
@@ -0,0 +1,126 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Runs independent startup phases concurrently and records the wall-clock
+ * time of each, measured from the moment main() was entered.
+ */
+class StartupReport {
+
+    private static final class Phase {
+        final String name;
+        final long startNanos;
+        volatile long endNanos = -1;
+        volatile boolean failed;
+        CompletableFuture<?> done = CompletableFuture.completedFuture(null);
+
+        Phase(String name, long startNanos) {
+            this.name = name;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private final long originNanos = System.nanoTime();
+    private final long jvmStartupMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    // Loading the management classes above takes a while, so the uptime is pinned to when it was read
+    private final long uptimeReadNanos = System.nanoTime();
+    private final List<Phase> phases = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<?>> pending = new CopyOnWriteArrayList<>();
+
+    /** Runs a phase on its own daemon thread. */
+    <T> CompletableFuture<T> run(String name, Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }, "startup-" + name.replace(' ', '-'));
+        thread.setDaemon(true);
+        CompletableFuture<T> tracked = track(name, result);
+        thread.start();
+        return tracked;
+    }
+
+    /** Times a phase that some other component is already running. */
+    <T> CompletableFuture<T> track(String name, CompletableFuture<T> work) {
+        Phase phase = new Phase(name, System.nanoTime());
+        phases.add(phase);
+        CompletableFuture<T> tracked = work.whenComplete((value, error) -> {
+            phase.failed = error != null;
+            phase.endNanos = System.nanoTime();
+        });
+        phase.done = tracked;
+        pending.add(tracked);
+        return tracked;
+    }
+
+    /** Records an instant, such as the first input prompt. */
+    void mark(String name) {
+        long now = System.nanoTime();
+        Phase phase = new Phase(name, now);
+        phase.endNanos = now;
+        phases.add(phase);
+    }
+
+    /** Prints the report once every tracked phase has finished. */
+    void printWhenComplete() {
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, error) -> {
+                print();
+                return null;
+            });
+    }
+
+    void print() {
+        StringBuilder report = new StringBuilder("\n⏱️  Startup timing (ms since main, JVM start to main: "
+            + jvmToMainMillis() + " ms)\n");
+        for (Phase phase : phases) {
+            long start = millis(phase.startNanos);
+            if (phase.endNanos < 0) {
+                report.append(String.format("   %-20s %6d → (running)%n", phase.name, start));
+            } else if (phase.endNanos == phase.startNanos) {
+                report.append(String.format("   %-20s %6d%n", phase.name, start));
+            } else {
+                report.append(String.format("   %-20s %6d → %6d  (%d ms)%s%n", phase.name, start,
+                    millis(phase.endNanos), millis(phase.endNanos) - start, phase.failed ? " ❌ failed" : ""));
+            }
+        }
+        System.out.print(report);
+    }
+
+    /**
+     * The one-line result Main --startup-compare reads from each launch:
+     * JVM start to main, then the mark and the end of the ready phase in ms
+     * since main (-1 if that phase failed). Waits for the ready phase.
+     */
+    void printProbe(String mark, String readyPhase, long timeoutMillis) {
+        long markMillis = -1;
+        long readyMillis = -1;
+        for (Phase phase : phases) {
+            if (phase.name.equals(mark)) {
+                markMillis = millis(phase.startNanos);
+            } else if (phase.name.equals(readyPhase)) {
+                try {
+                    phase.done.get(timeoutMillis, TimeUnit.MILLISECONDS);
+                    readyMillis = millis(phase.endNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | TimeoutException e) {
+                    // Reported as -1
+                }
+            }
+        }
+        System.out.println("startup-probe jvm=" + jvmToMainMillis() + " prompt=" + markMillis + " voice=" + readyMillis);
+    }
+
+    private long jvmToMainMillis() {
+        return jvmStartupMillis - millis(uptimeReadNanos);
+    }
+
+    private long millis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos - originNanos);
+    }
+}
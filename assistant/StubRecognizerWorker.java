@@ -0,0 +1,108 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Stand-in recognizer worker that speaks the same protocol as
+ * recognizer_worker.ps1 but answers from a script instead of a microphone,
+ * so the worker backend can be exercised on any OS.
+ *
+ * The script is a file (or a '|' separated list) of answers, used in turn
+ * and started again from the top when the worker is restarted. A
+ * RECOGNIZE_WAV is answered from the script too, once the file has been
+ * checked to be 16 kHz 16-bit mono audio.
+ * Besides plain transcripts it understands:
+ *   !nomatch    answer NOMATCH
+ *   !crash      exit the process without answering
+ *   !hang       never answer
+ *   !sleep N    wait N ms before answering the next line of the script
+ *   !partial T  send T as an interim hypothesis, then go on to the next line
+ */
+class StubRecognizerWorker {
+
+    /** Command line that starts this worker with the current classpath. */
+    static List<String> command(String script) {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return List.of(java, "-cp", System.getProperty("java.class.path"), "StubRecognizerWorker", script);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Deque<String> script = new ArrayDeque<>(load(args.length > 0 ? args[0] : ""));
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, "UTF-8");
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        out.println("0\tREADY\tstub");
+        String line;
+        while ((line = in.readLine()) != null) {
+            WorkerRecognizerBackend.Frame request = WorkerRecognizerBackend.parse(line);
+            if (request == null) {
+                continue;
+            }
+            if (request.kind.equals("PING")) {
+                out.println(request.id + "\tPONG\t");
+                continue;
+            }
+            if (request.kind.equals("RECOGNIZE_WAV")) {
+                String problem = checkUtterance(Paths.get(request.text));
+                if (problem != null) {
+                    out.println(request.id + "\tERROR\t" + problem);
+                    continue;
+                }
+            } else if (!request.kind.equals("RECOGNIZE")) {
+                out.println(request.id + "\tERROR\tunknown verb " + request.kind);
+                continue;
+            }
+
+            String answer = script.isEmpty() ? "!nomatch" : script.poll();
+            while (answer.startsWith("!sleep ") || answer.startsWith("!partial ")) {
+                if (answer.startsWith("!sleep ")) {
+                    Thread.sleep(Long.parseLong(answer.substring(7).trim()));
+                } else {
+                    out.println(request.id + "\tPARTIAL\t" + answer.substring(9).trim());
+                }
+                answer = script.isEmpty() ? "!nomatch" : script.poll();
+            }
+            switch (answer) {
+                case "!crash":
+                    System.exit(3);
+                    break;
+                case "!hang":
+                    Thread.sleep(Long.MAX_VALUE);
+                    break;
+                case "!nomatch":
+                    out.println(request.id + "\tNOMATCH\t");
+                    break;
+                default:
+                    out.println(request.id + "\tOK\t" + answer);
+            }
+        }
+    }
+
+    /** Why file is not a recorded utterance as AudioRecorder hands them over, or null if it is. */
+    private static String checkUtterance(Path file) {
+        try {
+            AudioFormat format = AudioSystem.getAudioFileFormat(file.toFile()).getFormat();
+            if (format.getSampleRate() != 16000 || format.getChannels() != 1 || format.getSampleSizeInBits() != 16) {
+                return "unexpected format " + format;
+            }
+            return null;
+        } catch (IOException | UnsupportedAudioFileException e) {
+            return "unreadable utterance " + file + ": " + e.getMessage();
+        }
+    }
+
+    private static List<String> load(String script) throws IOException {
+        if (script.isEmpty()) {
+            return List.of();
+        }
+        Path file = Paths.get(script);
+        if (Files.isRegularFile(file)) {
+            return Files.readAllLines(file, StandardCharsets.UTF_8);
+        }
+        return Arrays.asList(script.split("\\|"));
+    }
+}
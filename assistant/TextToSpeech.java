@@ -0,0 +1,513 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+
+// FreeTTS imports
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.VoiceManager;
+
+class TextToSpeech {
+    private static final int QUEUE_CAPACITY = 8;
+    private static final long DEFAULT_AUDIO_CACHE_BYTES = 16L * 1024 * 1024;
+    // How long cleanup() waits for the speech worker to leave the voice before freeing it
+    private static final long WORKER_STOP_MILLIS = 2000;
+    
+    /**
+     * Text waiting to be spoken and the future its caller holds. bargeIns
+     * is the interrupt() count when it was queued, which makes it its
+     * cancel token: any later interrupt() cancels it, playing or not.
+     */
+    private static final class Utterance {
+        final String text;
+        final long bargeIns;
+        final CompletableFuture<Boolean> done = new CompletableFuture<>();
+        
+        Utterance(String text, long bargeIns) {
+            this.text = text;
+            this.bargeIns = bargeIns;
+        }
+    }
+    
+    private volatile Voice voice;
+    private final BlockingQueue<Utterance> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread worker = new Thread(this::runSpeechWorker, "tts-worker");
+    private final AtomicLong bargeIns = new AtomicLong();
+    // Most recently queued utterance; the queue is FIFO, so it is the last one to finish
+    private volatile CompletableFuture<Boolean> lastQueued = CompletableFuture.completedFuture(true);
+    private volatile BufferingAudioPlayer player;
+    private volatile LineAudioPlayer output;
+    private final SpeechAudioCache audioCache = new SpeechAudioCache(
+        Long.getLong("assistant.audioCache.maxBytes", DEFAULT_AUDIO_CACHE_BYTES));
+    private final String audioCacheFile = System.getProperty("assistant.audioCache.file");
+    private final boolean streaming = Boolean.parseBoolean(System.getProperty("assistant.tts.streaming", "true"));
+    private final boolean speculative = Boolean.parseBoolean(System.getProperty("assistant.speculate", "true"));
+    // Second voice that renders the next chunk of a long response while the current one plays,
+    // and replies guessed from partial recognition before the user has finished speaking.
+    // Completes once it is allocated, exceptionally if that failed; until then replies are
+    // synthesized whole on the speaking voice
+    private final CompletableFuture<VoicePool> renderVoice = new CompletableFuture<>();
+    private final ExecutorService renderer = Executors.newSingleThreadExecutor(AppLauncher.daemonThreads("tts-render"));
+    // Renders still running on the render voice, by cache key, so play() can wait for one instead of redoing it
+    private final Map<String, CompletableFuture<SpeechAudioCache.Entry>> rendering = new ConcurrentHashMap<>();
+
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+    
+    /**
+     * Returns at once; the voice is allocated on the speech worker thread.
+     * Text spoken before the voice is ready waits in the queue.
+     */
+    public TextToSpeech() {
+        worker.setDaemon(true);
+        worker.start();
+    }
+    
+    /** Completes when the voice is allocated, or exceptionally if that failed. */
+    public CompletableFuture<Void> ready() {
+        return ready;
+    }
+    
+    private void initializeVoice() {
+        try {
+            System.out.println("🔊 Initializing FreeTTS Text-to-Speech...");
+            
+            // Set FreeTTS voice directory
+            System.setProperty("freetts.voices", 
+                "com.sun.speech.freetts.en.us.cmu_us_kal.KevinVoiceDirectory");
+            
+            // Initialize VoiceManager
+            VoiceManager voiceManager = VoiceManager.getInstance();
+            Voice[] voices = voiceManager.getVoices();
+            
+            System.out.println("Available voices:");
+            for (Voice v : voices) {
+                System.out.println("  - " + v.getName());
+            }
+            
+            // Try to get Kevin voice first
+            voice = voiceManager.getVoice("kevin16");
+            
+            if (voice == null) {
+                // Try alternative voice names
+                voice = voiceManager.getVoice("kevin");
+                if (voice == null) {
+                    voice = voiceManager.getVoice("cmu_us_kal");
+                    if (voice == null && voices.length > 0) {
+                        // Use first available voice
+                        voice = voices[0];
+                    }
+                }
+            }
+
+            if (voice != null) {
+                PronunciationCache.install(voice);
+                voice.allocate();
+                
+                // Set voice properties for better quality
+                voice.setRate(150);  // Speech rate
+                voice.setPitch(100); // Pitch
+                voice.setVolume(1.0f); // Volume
+                
+                // Capture synthesized audio so repeated phrases can be replayed from the cache;
+                // the output line underneath stays open between utterances
+                output = LineAudioPlayer.fromSystemProperties();
+                player = new BufferingAudioPlayer(output);
+                voice.setAudioPlayer(player);
+                loadAudioCache();
+                if (streaming || speculative) {
+                    VoicePool renderPool = new VoicePool(voice.getName(), 0, 1);
+                    renderer.execute(() -> allocateRenderVoice(renderPool));
+                }
+                Thread warmer = new Thread(this::warmPronunciations, "pronunciation-warmup");
+                warmer.setDaemon(true);
+                warmer.setPriority(Thread.MIN_PRIORITY);
+                warmer.start();
+                
+                System.out.println("✅ FreeTTS initialized successfully with voice: " + voice.getName());
+                
+            } else {
+                throw new IllegalStateException("No FreeTTS voices available. Check JAR files in classpath.");
+            }
+            
+        } catch (Exception e) {
+            System.err.println("❌ Error initializing FreeTTS: " + e.getMessage());
+            System.err.println("💡 Make sure all FreeTTS JAR files are in the classpath:");
+            System.err.println("   - freetts.jar");
+            System.err.println("   - cmu_us_kal.jar");
+            System.err.println("   - cmu_us_kal16.jar");
+            e.printStackTrace();
+            throw new RuntimeException("Failed to initialize FreeTTS", e);
+        }
+    }
+
+    /**
+     * Queues text for the speech worker and returns at once. The future
+     * completes with true once the text has been played, or false if it was
+     * interrupted, dropped from a full queue, or could not be spoken.
+     */
+    public CompletableFuture<Boolean> speak(String text) {
+        Utterance utterance = new Utterance(text, bargeIns.get());
+        if (ready.isCompletedExceptionally() || text == null || text.trim().isEmpty()) {
+            System.out.println("🔇 Voice not available or empty text");
+            utterance.done.complete(false);
+            return utterance.done;
+        }
+        
+        // Keep the newest speech: when the queue is full, drop the oldest pending utterance
+        while (!queue.offer(utterance)) {
+            Utterance dropped = queue.poll();
+            if (dropped != null) {
+                dropped.done.complete(false);
+            }
+        }
+        lastQueued = utterance.done;
+        if (ready.isCompletedExceptionally()) {
+            // Initialization failed while this was being queued
+            interrupt();
+        }
+        return utterance.done;
+    }
+    
+    /**
+     * Barge-in: cuts off the utterance that is playing and discards
+     * everything still waiting in the queue.
+     */
+    public void interrupt() {
+        // Cancels every utterance queued so far, including one the worker has taken but not started
+        bargeIns.incrementAndGet();
+        Utterance pending;
+        while ((pending = queue.poll()) != null) {
+            pending.done.complete(false);
+        }
+        BufferingAudioPlayer playing = player;
+        if (playing != null) {
+            playing.cancel();
+        }
+    }
+    
+    private boolean cancelled(Utterance utterance) {
+        return utterance.bargeIns != bargeIns.get();
+    }
+    
+    /**
+     * Waits until everything queued so far has been spoken. Whatever is
+     * still playing or queued at the timeout is cut off; returns false then.
+     */
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        try {
+            lastQueued.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        }
+    }
+    
+    private void runSpeechWorker() {
+        try {
+            initializeVoice();
+            ready.complete(null);
+        } catch (RuntimeException | Error e) {
+            // FreeTTS reports a missing voice directory as an Error
+            System.err.println("❌ Error initializing FreeTTS: " + e.getMessage());
+            ready.completeExceptionally(e);
+            interrupt();
+            return;
+        }
+        
+        try {
+            while (true) {
+                Utterance utterance = queue.take();
+                // Before the token check, so an interrupt() from here on reaches the player as well
+                player.clearCancel();
+                if (cancelled(utterance)) {
+                    utterance.done.complete(false);
+                    continue;
+                }
+                try {
+                    System.out.println("🗣️  Speaking: " + utterance.text);
+                    utterance.done.complete(play(utterance));
+                } catch (Exception e) {
+                    System.err.println("❌ Error in speech synthesis: " + e.getMessage());
+                    e.printStackTrace();
+                    utterance.done.complete(false);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Shutting down
+        }
+    }
+    
+    /**
+     * Plays text from the audio cache, synthesizing and caching it on a miss.
+     * Text of more than one sentence or clause is streamed chunk by chunk.
+     * A barge-in while audio is still rendering is caught after the wait.
+     */
+    private boolean play(Utterance utterance) {
+        String text = utterance.text;
+        long started = System.nanoTime();
+        String key = SpeechAudioCache.key(text, voice.getName(), voice.getRate(), voice.getPitch());
+        SpeechAudioCache.Entry cached = audioCache.get(key);
+        if (cached == null) {
+            // Rendered ahead of time and not finished yet: waiting is still faster than starting over
+            CompletableFuture<SpeechAudioCache.Entry> pending = rendering.get(key);
+            cached = pending == null ? null : pending.join();
+        }
+        if (cancelled(utterance)) {
+            return false;
+        }
+        if (cached != null) {
+            boolean played = player.replay(cached.format, cached.pcm);
+            recordFirstAudio(started);
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.PLAYBACK, System.nanoTime() - started);
+            return played;
+        }
+        
+        VoicePool renderPool = readyRenderVoice();
+        if (streaming && renderPool != null) {
+            List<String> chunks = SpeechChunker.split(text);
+            if (chunks.size() > 1) {
+                return playStreaming(utterance, renderPool, chunks, started);
+            }
+        }
+        
+        player.startRecording();
+        boolean spoken = voice.speak(text);
+        byte[] pcm = player.stopRecording();
+        // Synthesis runs until the first audio reaches the player; the rest is playback
+        long firstAudio = player.firstWriteNanos();
+        if (firstAudio != 0) {
+            recordFirstAudio(started);
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.SYNTHESIZE, firstAudio - started);
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.PLAYBACK, System.nanoTime() - firstAudio);
+        }
+        if (spoken && pcm != null) {
+            audioCache.put(key, player.getAudioFormat(), pcm);
+        }
+        return spoken;
+    }
+    
+    /**
+     * Plays chunk N while chunk N+1 is rendered on the render voice, so the
+     * time to first audio depends on the first chunk, not the whole text.
+     */
+    private boolean playStreaming(Utterance utterance, VoicePool renderPool, List<String> chunks, long started) {
+        CompletableFuture<SpeechAudioCache.Entry> next = renderChunk(renderPool, chunks.get(0));
+        boolean first = true;
+        for (int i = 0; i < chunks.size(); i++) {
+            SpeechAudioCache.Entry chunk = next.join();
+            if (cancelled(utterance)) {
+                // Barge-in while the chunk was rendering; it still lands in the cache
+                return false;
+            }
+            if (i + 1 < chunks.size()) {
+                next = renderChunk(renderPool, chunks.get(i + 1));
+            }
+            if (chunk == null) {
+                continue;
+            }
+            long playStarted = System.nanoTime();
+            boolean played = player.replay(chunk.format, chunk.pcm);
+            if (first) {
+                recordFirstAudio(started);
+                first = false;
+            }
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.PLAYBACK, System.nanoTime() - playStarted);
+            if (!played) {
+                // Barge-in; chunks still rendering finish into the cache
+                return false;
+            }
+        }
+        return !first;
+    }
+    
+    /**
+     * Renders text into the audio cache on the render voice without playing
+     * it, e.g. a reply guessed from a partial recognition result. Completes
+     * with true if new audio was cached, false if it was cached already or
+     * cannot be rendered ahead (no render voice yet, or turned off with
+     * -Dassistant.speculate=false).
+     */
+    CompletableFuture<Boolean> prefetch(String text) {
+        VoicePool renderPool = readyRenderVoice();
+        if (!speculative || renderPool == null || text == null || text.trim().isEmpty()) {
+            return CompletableFuture.completedFuture(false);
+        }
+        String key = SpeechAudioCache.key(text, voice.getName(), voice.getRate(), voice.getPitch());
+        if (audioCache.get(key) != null) {
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<SpeechAudioCache.Entry> ours = new CompletableFuture<>();
+        // A render of the same text already running is someone else's, e.g. a chunk being played
+        if (render(renderPool, text, key, ours) != ours) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return ours.thenApply(rendered -> rendered != null);
+    }
+    
+    /** Drops audio rendered by prefetch() that turned out not to be needed. */
+    void discard(String text) {
+        if (voice != null) {
+            audioCache.remove(SpeechAudioCache.key(text, voice.getName(), voice.getRate(), voice.getPitch()));
+        }
+    }
+    
+    /** The chunk's audio from the cache, or its render on the render voice. */
+    private CompletableFuture<SpeechAudioCache.Entry> renderChunk(VoicePool renderPool, String chunk) {
+        String key = SpeechAudioCache.key(chunk, voice.getName(), voice.getRate(), voice.getPitch());
+        SpeechAudioCache.Entry cached = audioCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return render(renderPool, chunk, key, new CompletableFuture<>());
+    }
+    
+    /**
+     * Renders chunk into the audio cache on the render voice, completing
+     * placeholder, unless a render of key is already running. Returns the
+     * render registered for key: placeholder, or the one that was running.
+     * Callers have already looked in the cache.
+     */
+    private CompletableFuture<SpeechAudioCache.Entry> render(VoicePool renderPool, String chunk, String key,
+            CompletableFuture<SpeechAudioCache.Entry> placeholder) {
+        CompletableFuture<SpeechAudioCache.Entry> render = rendering.computeIfAbsent(key, k -> placeholder);
+        if (render != placeholder) {
+            return render;
+        }
+        // Attached once the mapping exists, so even a render that fails at once is removed
+        placeholder.whenComplete((entry, error) -> rendering.remove(key, placeholder));
+        try {
+            CompletableFuture.supplyAsync(() -> {
+                try {
+                    VoicePool.Rendered rendered = renderPool.render(chunk);
+                    if (rendered == null) {
+                        return null;
+                    }
+                    PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.SYNTHESIZE, rendered.renderNanos);
+                    audioCache.put(key, rendered.format, rendered.pcm);
+                    return new SpeechAudioCache.Entry(rendered.format, ByteBuffer.wrap(rendered.pcm));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }, renderer).whenComplete((entry, error) -> {
+                if (error != null) {
+                    placeholder.completeExceptionally(error);
+                } else {
+                    placeholder.complete(entry);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Renderer shut down by cleanup()
+            placeholder.complete(null);
+        }
+        return placeholder;
+    }
+    
+    private void recordFirstAudio(long started) {
+        long firstAudio = player.firstWriteNanos();
+        if (firstAudio != 0) {
+            PipelineMetrics.GLOBAL.record(PipelineMetrics.Stage.FIRST_AUDIO, firstAudio - started);
+        }
+    }
+    
+    private void allocateRenderVoice(VoicePool renderPool) {
+        try {
+            renderPool.acquire().close();
+            renderVoice.complete(renderPool);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            renderPool.close();
+            renderVoice.completeExceptionally(e);
+        } catch (RuntimeException | Error e) {
+            System.err.println("⚠️  Streaming speech disabled: " + e.getMessage());
+            renderPool.close();
+            renderVoice.completeExceptionally(e);
+        }
+    }
+    
+    /** The render voice; null while it is still being allocated, if that failed, or if it is turned off. */
+    private VoicePool readyRenderVoice() {
+        return renderVoice.isDone() && !renderVoice.isCompletedExceptionally() ? renderVoice.join() : null;
+    }
+    
+    // On its own thread rather than the renderer, so neither the greeting nor render-voice
+    // allocation queue behind it; a word both want at once waits for one lexicon lookup only
+    private void warmPronunciations() {
+        PronunciationCache cache = PronunciationCache.shared();
+        if (cache == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        int words = cache.warm(CommandProcessor.staticResponses());
+        System.out.printf(Locale.ROOT, "📖 Pronunciations of %d words cached in %.0f ms%n",
+            words, (System.nanoTime() - started) / 1e6);
+    }
+    
+    public String getAudioCacheStats() {
+        return audioCache.stats();
+    }
+    
+    private void loadAudioCache() {
+        if (audioCacheFile == null) {
+            return;
+        }
+        try {
+            int loaded = audioCache.load(Paths.get(audioCacheFile));
+            System.out.println("💾 Loaded " + loaded + " cached phrases from " + audioCacheFile);
+        } catch (Exception e) {
+            System.err.println("⚠️  Could not load speech cache: " + e.getMessage());
+        }
+    }
+    
+    private void saveAudioCache() {
+        if (audioCacheFile == null) {
+            return;
+        }
+        try {
+            audioCache.save(Paths.get(audioCacheFile));
+            System.out.println("💾 Saved speech cache to " + audioCacheFile);
+        } catch (Exception e) {
+            System.err.println("⚠️  Could not save speech cache: " + e.getMessage());
+        }
+    }
+    
+    public void cleanup() {
+        interrupt();
+        worker.interrupt();
+        try {
+            // The worker may still be inside voice.speak(); the voice and line must outlive that call
+            worker.join(WORKER_STOP_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive()) {
+            System.err.println("⚠️  Speech worker still busy after " + WORKER_STOP_MILLIS + " ms; releasing the voice anyway");
+        }
+        Voice allocated = voice;
+        if (allocated == null) {
+            return;
+        }
+        System.out.println("💾 Speech cache: " + audioCache.stats());
+        PronunciationCache pronunciations = PronunciationCache.shared();
+        if (pronunciations != null) {
+            System.out.println("📖 Pronunciation cache: " + pronunciations.stats());
+        }
+        saveAudioCache();
+        renderer.shutdownNow();
+        // Now if it is allocated, or when an allocation still running finishes
+        renderVoice.thenAccept(VoicePool::close);
+        try {
+            allocated.deallocate();
+            // Set with setAudioPlayer(), so deallocate() leaves it open
+            output.close();
+            System.out.println("🔈 Audio output: " + output.stats());
+            System.out.println("🔊 FreeTTS cleaned up successfully");
+        } catch (Exception e) {
+            System.err.println("❌ Error cleaning up FreeTTS: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sound.sampled.AudioFormat;
+
+import com.sun.speech.freetts.Voice;
+import com.sun.speech.freetts.VoiceManager;
+
+/**
+ * Pool of allocated FreeTTS voices rendering into memory.
+ *
+ * A Voice must not be used by two threads at once, so one voice limits
+ * synthesis to one core. The pool allocates `initial` voices up front and
+ * more on demand up to `max`; each caller borrows a voice for one render,
+ * so up to max phrases are synthesized in parallel.
+ */
+class VoicePool implements AutoCloseable {
+
+    /** One voice on loan; closing it returns the voice to the pool. */
+    final class Lease implements AutoCloseable {
+        final Voice voice;
+        final BufferingAudioPlayer player;
+
+        private Lease(Voice voice, BufferingAudioPlayer player) {
+            this.voice = voice;
+            this.player = player;
+        }
+
+        @Override
+        public void close() {
+            idle.offerFirst(this);
+        }
+    }
+
+    /** PCM rendered for one phrase. */
+    static final class Rendered {
+        final AudioFormat format;
+        final byte[] pcm;
+        final long renderNanos;
+
+        Rendered(AudioFormat format, byte[] pcm, long renderNanos) {
+            this.format = format;
+            this.pcm = pcm;
+            this.renderNanos = renderNanos;
+        }
+    }
+
+    private final String voiceName;
+    private final int max;
+    // Most recently returned voice first, so a lightly loaded pool keeps reusing warm voices
+    private final LinkedBlockingDeque<Lease> idle = new LinkedBlockingDeque<>();
+    private final List<Lease> all = new ArrayList<>();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    VoicePool(String voiceName, int initial, int max) {
+        this.voiceName = voiceName;
+        this.max = Math.max(1, max);
+        for (int i = 0; i < Math.min(initial, this.max); i++) {
+            allocated.incrementAndGet();
+            idle.add(allocate());
+        }
+    }
+
+    /**
+     * Kevin voices; the cap is -Dassistant.voicePool.size (default: one per
+     * core) and -Dassistant.voicePool.initial are allocated immediately.
+     */
+    static VoicePool fromSystemProperties() {
+        System.setProperty("freetts.voices", "com.sun.speech.freetts.en.us.cmu_us_kal.KevinVoiceDirectory");
+        return new VoicePool("kevin16", Integer.getInteger("assistant.voicePool.initial", 1),
+            Integer.getInteger("assistant.voicePool.size", Runtime.getRuntime().availableProcessors()));
+    }
+
+    // Called after reserving a slot in allocated; gives the slot back if allocation fails
+    private Lease allocate() {
+        try {
+            Voice voice = VoiceManager.getInstance().getVoice(voiceName);
+            if (voice == null) {
+                throw new IllegalStateException("FreeTTS voice not available: " + voiceName);
+            }
+            PronunciationCache.install(voice);
+            voice.allocate();
+            voice.setRate(150);
+            voice.setPitch(100);
+            voice.setVolume(1.0f);
+            BufferingAudioPlayer player = new BufferingAudioPlayer(null);
+            voice.setAudioPlayer(player);
+            Lease lease = new Lease(voice, player);
+            synchronized (all) {
+                all.add(lease);
+            }
+            return lease;
+        } catch (RuntimeException | Error e) {
+            // FreeTTS reports a missing voice directory as an Error
+            allocated.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /** Borrows an idle voice, allocating one if under the cap, otherwise waiting for one. */
+    Lease acquire() throws InterruptedException {
+        Lease lease = idle.pollFirst();
+        if (lease != null) {
+            return lease;
+        }
+        int count;
+        while ((count = allocated.get()) < max) {
+            if (allocated.compareAndSet(count, count + 1)) {
+                return allocate();
+            }
+        }
+        return idle.takeFirst();
+    }
+
+    /** Synthesizes text on a borrowed voice; null if nothing was rendered. */
+    Rendered render(String text) throws InterruptedException {
+        try (Lease lease = acquire()) {
+            long started = System.nanoTime();
+            lease.player.startRecording();
+            lease.voice.speak(text);
+            byte[] pcm = lease.player.stopRecording();
+            return pcm == null ? null : new Rendered(lease.player.getAudioFormat(), pcm, System.nanoTime() - started);
+        }
+    }
+
+    /** Name, rate and pitch shared by every voice, e.g. for audio cache keys. */
+    String cacheKey(String text) {
+        return SpeechAudioCache.key(text, voiceName, 150, 100);
+    }
+
+    int allocated() {
+        return allocated.get();
+    }
+
+    int max() {
+        return max;
+    }
+
+    @Override
+    public void close() {
+        synchronized (all) {
+            for (Lease lease : all) {
+                lease.voice.deallocate();
+            }
+            all.clear();
+        }
+        idle.clear();
+    }
+}
@@ -0,0 +1,442 @@
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+
+/**
+ * Keyword spotter light enough to run on every microphone frame.
+ *
+ * Each 20 ms frame from AudioRecorder becomes 12 MFCCs: pre-emphasis,
+ * Hamming window, 512-point FFT, 26 mel bands, log and DCT. c0 is left
+ * out so loudness does not matter. The features are matched against
+ * templates of the wake word, enrolled from WAV recordings, with
+ * subsequence DTW: one column of the warping matrix per template and frame,
+ * so a match can start at any frame. A detection is a path through the
+ * whole template whose average frame distance is under the threshold.
+ *
+ * Silence costs almost nothing. An energy gate like EnergyEndpointer's
+ * skips feature extraction and matching until the frame is well above the
+ * noise floor. Every buffer is allocated up front, so processing a frame
+ * allocates nothing.
+ *
+ * Main --wake-test runs the spotter over WAV fixtures and reports the
+ * detections, the best score seen and the CPU time per second of audio.
+ */
+class WakeWordSpotter implements AudioRecorder.FrameListener {
+    static final double DEFAULT_THRESHOLD = 10.0;
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE * AudioRecorder.FRAME_MILLIS / 1000;
+    private static final int FFT_SIZE = 512;
+    private static final int MEL_BANDS = 26;
+    private static final int CEPSTRA = 12;
+    private static final double MIN_HZ = 80;
+    private static final double MAX_HZ = 4000;
+    private static final float PRE_EMPHASIS = 0.97f;
+    private static final float BAND_FLOOR = 0.01f;
+    // Gate: open above the noise floor, kept open through short gaps inside a word
+    private static final double GATE_MARGIN_DB = 8.0;
+    private static final double MIN_GATE_DB = 30.0;
+    private static final double FLOOR_ADAPT = 0.05;
+    private static final int GATE_HANGOVER_FRAMES = 15;
+    // A match may run from half to twice the template's length
+    private static final int MAX_STRETCH = 2;
+    // After a detection, ignore the tail of the same word
+    private static final int REFRACTORY_FRAMES = 50;
+
+    /** Told about each detection, on the thread that feeds the frames. */
+    interface Listener {
+        void onWakeWord(String template, double score, long frame);
+    }
+
+    /** MFCCs of one frame at a time, into buffers owned by the extractor. */
+    private static final class Features {
+        private static final float[] WINDOW = new float[FRAME_SAMPLES];
+        private static final int[] BIT_REVERSE = new int[FFT_SIZE];
+        private static final float[] COS = new float[FFT_SIZE / 2];
+        private static final float[] SIN = new float[FFT_SIZE / 2];
+        // Triangular mel filters: first FFT bin and weights of each band
+        private static final int[] BAND_START = new int[MEL_BANDS];
+        private static final float[][] BAND_WEIGHTS = new float[MEL_BANDS][];
+        private static final float[][] DCT = new float[CEPSTRA][MEL_BANDS];
+
+        static {
+            for (int i = 0; i < FRAME_SAMPLES; i++) {
+                WINDOW[i] = (float) (0.54 - 0.46 * Math.cos(2 * Math.PI * i / (FRAME_SAMPLES - 1)));
+            }
+            int bits = Integer.numberOfTrailingZeros(FFT_SIZE);
+            for (int i = 0; i < FFT_SIZE; i++) {
+                BIT_REVERSE[i] = Integer.reverse(i) >>> (32 - bits);
+            }
+            for (int i = 0; i < FFT_SIZE / 2; i++) {
+                COS[i] = (float) Math.cos(2 * Math.PI * i / FFT_SIZE);
+                SIN[i] = (float) -Math.sin(2 * Math.PI * i / FFT_SIZE);
+            }
+            double minMel = mel(MIN_HZ);
+            double maxMel = mel(MAX_HZ);
+            double[] edges = new double[MEL_BANDS + 2];
+            for (int i = 0; i < edges.length; i++) {
+                double hz = 700 * (Math.pow(10, (minMel + (maxMel - minMel) * i / (MEL_BANDS + 1)) / 2595) - 1);
+                edges[i] = hz * FFT_SIZE / SAMPLE_RATE;
+            }
+            for (int band = 0; band < MEL_BANDS; band++) {
+                int first = (int) Math.ceil(edges[band]);
+                int last = (int) Math.floor(edges[band + 2]);
+                BAND_START[band] = first;
+                BAND_WEIGHTS[band] = new float[Math.max(0, last - first + 1)];
+                for (int bin = first; bin <= last; bin++) {
+                    double weight = bin <= edges[band + 1]
+                        ? (bin - edges[band]) / (edges[band + 1] - edges[band])
+                        : (edges[band + 2] - bin) / (edges[band + 2] - edges[band + 1]);
+                    BAND_WEIGHTS[band][bin - first] = (float) Math.max(0, weight);
+                }
+            }
+            for (int k = 0; k < CEPSTRA; k++) {
+                for (int m = 0; m < MEL_BANDS; m++) {
+                    DCT[k][m] = (float) Math.cos(Math.PI * (k + 1) * (m + 0.5) / MEL_BANDS);
+                }
+            }
+        }
+
+        private final float[] real = new float[FFT_SIZE];
+        private final float[] imaginary = new float[FFT_SIZE];
+        private final float[] bands = new float[MEL_BANDS];
+        final float[] cepstra = new float[CEPSTRA];
+        private float previousSample;
+
+        private static double mel(double hz) {
+            return 2595 * Math.log10(1 + hz / 700);
+        }
+
+        /** Computes the MFCCs of one frame of 16-bit little-endian samples into cepstra. */
+        void extract(byte[] pcm, int offset) {
+            for (int i = 0; i < FRAME_SAMPLES; i++) {
+                float sample = (short) ((pcm[offset + 2 * i] & 0xff) | (pcm[offset + 2 * i + 1] << 8));
+                real[BIT_REVERSE[i]] = (sample - PRE_EMPHASIS * previousSample) * WINDOW[i];
+                previousSample = sample;
+            }
+            for (int i = FRAME_SAMPLES; i < FFT_SIZE; i++) {
+                real[BIT_REVERSE[i]] = 0;
+            }
+            Arrays.fill(imaginary, 0);
+            fft();
+            float loudest = 1;
+            for (int band = 0; band < MEL_BANDS; band++) {
+                float[] weights = BAND_WEIGHTS[band];
+                int first = BAND_START[band];
+                float energy = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    int bin = first + i;
+                    energy += weights[i] * (real[bin] * real[bin] + imaginary[bin] * imaginary[bin]);
+                }
+                bands[band] = energy;
+                loudest = Math.max(loudest, energy);
+            }
+            // Bands far below the loudest one hold mostly noise; clamping them keeps it out of the cepstra
+            float floor = loudest * BAND_FLOOR;
+            for (int band = 0; band < MEL_BANDS; band++) {
+                bands[band] = (float) Math.log(Math.max(bands[band], floor));
+            }
+            for (int k = 0; k < CEPSTRA; k++) {
+                float sum = 0;
+                for (int m = 0; m < MEL_BANDS; m++) {
+                    sum += DCT[k][m] * bands[m];
+                }
+                cepstra[k] = sum;
+            }
+        }
+
+        // In-place iterative radix-2; the input is already in bit-reversed order
+        private void fft() {
+            for (int size = 2; size <= FFT_SIZE; size <<= 1) {
+                int half = size >> 1;
+                int step = FFT_SIZE / size;
+                for (int start = 0; start < FFT_SIZE; start += size) {
+                    for (int k = 0; k < half; k++) {
+                        float cos = COS[k * step];
+                        float sin = SIN[k * step];
+                        int even = start + k;
+                        int odd = even + half;
+                        float oddReal = real[odd] * cos - imaginary[odd] * sin;
+                        float oddImaginary = real[odd] * sin + imaginary[odd] * cos;
+                        real[odd] = real[even] - oddReal;
+                        imaginary[odd] = imaginary[even] - oddImaginary;
+                        real[even] += oddReal;
+                        imaginary[even] += oddImaginary;
+                    }
+                }
+            }
+        }
+    }
+
+    /** One recording of the wake word and its running DTW column. */
+    private static final class Template {
+        final String name;
+        final float[] features;
+        final int length;
+        // Accumulated cost and path length (in input frames) ending at each template frame
+        float[] cost;
+        float[] nextCost;
+        int[] steps;
+        int[] nextSteps;
+
+        Template(String name, float[] features) {
+            this.name = name;
+            this.features = features;
+            this.length = features.length / CEPSTRA;
+            cost = new float[length];
+            nextCost = new float[length];
+            steps = new int[length];
+            nextSteps = new int[length];
+            reset();
+        }
+
+        void reset() {
+            Arrays.fill(cost, Float.POSITIVE_INFINITY);
+            Arrays.fill(steps, 0);
+        }
+
+        /** Advances by one input frame; returns the average distance of the best full match ending here. */
+        float advance(float[] frame) {
+            for (int j = 0; j < length; j++) {
+                float distance = distance(frame, j);
+                // Input always advances one frame; the template advances by 0, 1 or 2,
+                // and a match can start afresh at the first template frame
+                float best = j == 0 ? 0 : Float.POSITIVE_INFINITY;
+                int bestSteps = 0;
+                float bestAverage = j == 0 ? distance : Float.POSITIVE_INFINITY;
+                for (int back = 0; back <= 2 && back <= j; back++) {
+                    float previous = cost[j - back];
+                    if (previous == Float.POSITIVE_INFINITY || steps[j - back] >= length * MAX_STRETCH) {
+                        continue;
+                    }
+                    float average = (previous + distance) / (steps[j - back] + 1);
+                    if (average < bestAverage) {
+                        bestAverage = average;
+                        best = previous;
+                        bestSteps = steps[j - back];
+                    }
+                }
+                nextCost[j] = best + distance;
+                nextSteps[j] = best == Float.POSITIVE_INFINITY ? 0 : bestSteps + 1;
+            }
+            float[] swapCost = cost;
+            cost = nextCost;
+            nextCost = swapCost;
+            int[] swapSteps = steps;
+            steps = nextSteps;
+            nextSteps = swapSteps;
+            int last = length - 1;
+            return steps[last] * 2 >= length ? cost[last] / steps[last] : Float.POSITIVE_INFINITY;
+        }
+
+        private float distance(float[] frame, int j) {
+            float sum = 0;
+            int base = j * CEPSTRA;
+            for (int k = 0; k < CEPSTRA; k++) {
+                float difference = frame[k] - features[base + k];
+                sum += difference * difference;
+            }
+            return (float) Math.sqrt(sum);
+        }
+    }
+
+    private final double threshold;
+    private final Listener listener;
+    private final Features features = new Features();
+    private final List<Template> templates = new ArrayList<>();
+    private double noiseFloorDb = MIN_GATE_DB - GATE_MARGIN_DB;
+    private int gateOpenFor;
+    private int refractory;
+    private long frame;
+    private long activeFrames;
+    private long detections;
+    private double bestScore = Double.POSITIVE_INFINITY;
+    private long processNanos;
+
+    WakeWordSpotter(double threshold, Listener listener) {
+        this.threshold = threshold;
+        this.listener = listener;
+    }
+
+    /**
+     * Spotter for the templates in the -Dassistant.wake directory, with
+     * -Dassistant.wake.threshold, or null when wake-word mode is off.
+     */
+    static WakeWordSpotter fromSystemProperties(Listener listener) {
+        String directory = System.getProperty("assistant.wake");
+        if (directory == null || directory.isEmpty()) {
+            return null;
+        }
+        double threshold = Double.parseDouble(System.getProperty("assistant.wake.threshold",
+            String.valueOf(DEFAULT_THRESHOLD)));
+        WakeWordSpotter spotter = new WakeWordSpotter(threshold, listener);
+        try {
+            spotter.enroll(Paths.get(directory));
+        } catch (IOException | UnsupportedAudioFileException e) {
+            System.err.println("⚠️  Wake word disabled, cannot read templates from " + directory + ": " + e.getMessage());
+            return null;
+        }
+        if (spotter.templates.isEmpty()) {
+            System.err.println("⚠️  Wake word disabled, no .wav templates in " + directory);
+            return null;
+        }
+        return spotter;
+    }
+
+    /** Adds every .wav in directory as a template; a single file works too. */
+    void enroll(Path directory) throws IOException, UnsupportedAudioFileException {
+        if (!Files.isDirectory(directory)) {
+            enrollFile(directory);
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.wav")) {
+            for (Path file : files) {
+                enrollFile(file);
+            }
+        }
+    }
+
+    private void enrollFile(Path file) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream stream = AudioSystem.getAudioInputStream(file.toFile())) {
+            String name = file.getFileName().toString().replaceFirst("\\.wav$", "");
+            templates.add(new Template(name, templateFeatures(stream)));
+        }
+    }
+
+    /** MFCCs of the loud part of a recording, first to last frame within 30 dB of the peak. */
+    static float[] templateFeatures(AudioInputStream stream) throws IOException {
+        Features extractor = new Features();
+        List<float[]> frames = new ArrayList<>();
+        List<Double> energies = new ArrayList<>();
+        AudioRecorder reader = new AudioRecorder();
+        reader.setFrameListener((pcm, offset, length) -> {
+            extractor.extract(pcm, offset);
+            frames.add(extractor.cepstra.clone());
+            energies.add(EnergyEndpointer.energyDb(pcm, offset, length));
+        });
+        reader.process(stream);
+        double peak = energies.stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        double floor = Math.max(MIN_GATE_DB, peak - 30);
+        int first = 0;
+        int last = frames.size() - 1;
+        while (first < last && energies.get(first) < floor) {
+            first++;
+        }
+        while (last > first && energies.get(last) < floor) {
+            last--;
+        }
+        if (frames.isEmpty() || energies.get(first) < floor) {
+            throw new IOException("no speech in template");
+        }
+        float[] template = new float[(last - first + 1) * CEPSTRA];
+        for (int i = first; i <= last; i++) {
+            System.arraycopy(frames.get(i), 0, template, (i - first) * CEPSTRA, CEPSTRA);
+        }
+        return template;
+    }
+
+    @Override
+    public void onFrame(byte[] pcm, int offset, int length) {
+        long started = System.nanoTime();
+        long current = frame++;
+        double energyDb = EnergyEndpointer.energyDb(pcm, offset, length);
+        if (energyDb > Math.max(MIN_GATE_DB, noiseFloorDb + GATE_MARGIN_DB)) {
+            gateOpenFor = GATE_HANGOVER_FRAMES;
+        } else {
+            noiseFloorDb += FLOOR_ADAPT * (energyDb - noiseFloorDb);
+            if (gateOpenFor > 0 && --gateOpenFor == 0) {
+                // End of the sound: no match can span the silence
+                resetTemplates();
+            }
+        }
+        if (gateOpenFor > 0) {
+            activeFrames++;
+            features.extract(pcm, offset);
+            if (refractory > 0) {
+                refractory--;
+            } else {
+                match(current);
+            }
+        }
+        processNanos += System.nanoTime() - started;
+    }
+
+    private void match(long current) {
+        for (int i = 0; i < templates.size(); i++) {
+            Template template = templates.get(i);
+            double score = template.advance(features.cepstra);
+            bestScore = Math.min(bestScore, score);
+            if (score < threshold) {
+                detections++;
+                refractory = REFRACTORY_FRAMES;
+                resetTemplates();
+                listener.onWakeWord(template.name, score, current);
+                return;
+            }
+        }
+    }
+
+    // Indexed loops here and in match(): nothing may allocate per frame, not even an iterator
+    private void resetTemplates() {
+        for (int i = 0; i < templates.size(); i++) {
+            templates.get(i).reset();
+        }
+    }
+
+    int templateCount() {
+        return templates.size();
+    }
+
+    long detections() {
+        return detections;
+    }
+
+    String stats() {
+        double audioSeconds = frame * AudioRecorder.FRAME_MILLIS / 1000.0;
+        return String.format(Locale.ROOT,
+            "%d detections, best score %.2f (threshold %.2f), %.1f s of audio, %.0f%% gated open, %.2f%% of one core",
+            detections, bestScore, threshold, audioSeconds, frame == 0 ? 0 : 100.0 * activeFrames / frame,
+            audioSeconds == 0 ? 0 : processNanos / 1e7 / audioSeconds);
+    }
+
+    /** Main --wake-test &lt;template dir or wav&gt; &lt;fixture.wav&gt;... */
+    static void test(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: Main --wake-test <template dir or wav> <fixture.wav>...");
+            return;
+        }
+        double threshold = Double.parseDouble(System.getProperty("assistant.wake.threshold",
+            String.valueOf(DEFAULT_THRESHOLD)));
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        for (int a = 2; a < args.length; a++) {
+            WakeWordSpotter spotter = new WakeWordSpotter(threshold, (template, score, frame) ->
+                System.out.printf(Locale.ROOT, "   🔔 '%s' at %.2f s (score %.2f)%n",
+                    template, frame * AudioRecorder.FRAME_MILLIS / 1000.0, score));
+            spotter.enroll(Paths.get(args[1]));
+            System.out.println("🎧 " + args[a] + " against " + spotter.templateCount() + " templates");
+            AudioRecorder recorder = new AudioRecorder();
+            recorder.setFrameListener(spotter);
+            long cpuStarted = threads.getCurrentThreadCpuTime();
+            try (AudioInputStream stream = AudioSystem.getAudioInputStream(new File(args[a]))) {
+                recorder.process(stream);
+            }
+            long cpuNanos = threads.getCurrentThreadCpuTime() - cpuStarted;
+            double audioSeconds = spotter.frame * AudioRecorder.FRAME_MILLIS / 1000.0;
+            System.out.println("   " + spotter.stats());
+            System.out.printf(Locale.ROOT, "   thread CPU %.1f ms, %.2f%% of one core in real time%n",
+                cpuNanos / 1e6, audioSeconds == 0 ? 0 : cpuNanos / 1e7 / audioSeconds);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Canonical 44-byte-header PCM WAV images built directly in ByteBuffers.
+ *
+ * WAV stores 16-bit samples little-endian while FreeTTS renders them
+ * big-endian, so samples are byte-swapped on the way in; 8-bit audio is
+ * copied as is. Written with a FileChannel gathering write, header and
+ * samples in one call, without going through AudioSystem.
+ */
+final class WavFiles {
+    static final int HEADER_BYTES = 44;
+
+    private WavFiles() {
+    }
+
+    /** Complete WAV image: header followed by the samples. */
+    static ByteBuffer image(AudioFormat format, ByteBuffer pcm) {
+        ByteBuffer samples = littleEndian(format, pcm);
+        ByteBuffer wav = ByteBuffer.allocate(HEADER_BYTES + samples.remaining());
+        wav.put(header(format, samples.remaining())).put(samples).flip();
+        return wav;
+    }
+
+    static byte[] toBytes(AudioFormat format, ByteBuffer pcm) {
+        return image(format, pcm).array();
+    }
+
+    /** Writes pcm to file as a WAV, replacing anything already there. */
+    static void write(Path file, AudioFormat format, ByteBuffer pcm) throws IOException {
+        ByteBuffer samples = littleEndian(format, pcm);
+        ByteBuffer[] parts = {header(format, samples.remaining()), samples};
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            // Header included: with no samples, parts[1] is empty from the start
+            while (parts[0].hasRemaining() || parts[1].hasRemaining()) {
+                channel.write(parts);
+            }
+        }
+    }
+
+    static double durationMillis(AudioFormat format, int pcmBytes) {
+        return pcmBytes * 1000.0 / (format.getFrameRate() * format.getFrameSize());
+    }
+
+    static ByteBuffer header(AudioFormat format, int dataBytes) {
+        int channels = format.getChannels();
+        int bits = format.getSampleSizeInBits();
+        int sampleRate = (int) format.getSampleRate();
+        int blockAlign = channels * bits / 8;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'}).putInt(36 + dataBytes).put(new byte[] {'W', 'A', 'V', 'E'});
+        header.put(new byte[] {'f', 'm', 't', ' '}).putInt(16)
+            .putShort((short) 1) // PCM
+            .putShort((short) channels)
+            .putInt(sampleRate)
+            .putInt(sampleRate * blockAlign)
+            .putShort((short) blockAlign)
+            .putShort((short) bits);
+        header.put(new byte[] {'d', 'a', 't', 'a'}).putInt(dataBytes);
+        header.flip();
+        return header;
+    }
+
+    private static ByteBuffer littleEndian(AudioFormat format, ByteBuffer pcm) {
+        ByteBuffer source = pcm.duplicate();
+        ByteBuffer samples = ByteBuffer.allocate(source.remaining());
+        convert(format, source, samples);
+        samples.flip();
+        return samples;
+    }
+
+    /**
+     * Converts samples from source into target in WAV order: signed
+     * little-endian for 16-bit, unsigned for 8-bit. target needs room for
+     * source.remaining() bytes; an odd trailing 16-bit byte is left behind.
+     */
+    static void convert(AudioFormat format, ByteBuffer source, ByteBuffer target) {
+        if (format.getSampleSizeInBits() == 16 && format.isBigEndian()) {
+            while (source.remaining() >= 2) {
+                byte high = source.get();
+                target.put(source.get()).put(high);
+            }
+        } else if (format.getSampleSizeInBits() == 8 && format.getEncoding() == AudioFormat.Encoding.PCM_SIGNED) {
+            while (source.hasRemaining()) {
+                target.put((byte) (source.get() + 128));
+            }
+        } else {
+            target.put(source);
+        }
+    }
+}
@@ -0,0 +1,306 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.sound.sampled.AudioFormat;
+
+/**
+ * Recognizer backed by a long-lived worker process.
+ *
+ * The worker is started once and keeps its engine loaded. Requests and
+ * responses are single-line frames on the worker's stdin and stdout:
+ *
+ * <pre>
+ *   request:  id TAB verb TAB argument
+ *   response: id TAB status TAB text
+ * </pre>
+ *
+ * On startup the worker sends "0 TAB READY TAB engine-name". Verbs are
+ * PING, RECOGNIZE (argument: timeout in milliseconds, listening on the
+ * worker's own microphone) and RECOGNIZE_WAV (argument: path of a recorded
+ * utterance); statuses are OK, NOMATCH, PONG and ERROR. Before its final
+ * answer a recognition may get any number of PARTIAL frames carrying
+ * interim hypotheses. Lines that are not frames are ignored. A request that times out or outlives a crash gets
+ * the worker restarted.
+ */
+class WorkerRecognizerBackend implements RecognizerBackend {
+    private static final long STARTUP_TIMEOUT_MILLIS = 15000;
+    // Extra time allowed on top of the recognition timeout for the round trip
+    private static final long RESPONSE_GRACE_MILLIS = 5000;
+
+    /** One parsed protocol line: a request (kind = verb) or a response (kind = status). */
+    static final class Frame {
+        final long id;
+        final String kind;
+        final String text;
+
+        Frame(long id, String kind, String text) {
+            this.id = id;
+            this.kind = kind;
+            this.text = text;
+        }
+    }
+
+    /** A running worker process and the requests waiting on it. */
+    private static final class Worker {
+        final Process process;
+        final BufferedWriter requests;
+        final Map<Long, CompletableFuture<Frame>> pending = new ConcurrentHashMap<>();
+        final Map<Long, Consumer<String>> partials = new ConcurrentHashMap<>();
+        final CompletableFuture<Frame> ready = new CompletableFuture<>();
+
+        Worker(Process process) {
+            this.process = process;
+            this.requests = new BufferedWriter(
+                new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private final String name;
+    private final List<String> command;
+    private final long responseGraceMillis;
+    private final AtomicLong nextId = new AtomicLong(1);
+    // Read without the lock by close(), which must not wait for a recognize in progress
+    private volatile Worker worker;
+    private volatile boolean closed;
+    private int restarts;
+
+    WorkerRecognizerBackend(String name, List<String> command) {
+        this(name, command, RESPONSE_GRACE_MILLIS);
+    }
+
+    WorkerRecognizerBackend(String name, List<String> command, long responseGraceMillis) {
+        this.name = name;
+        this.command = command;
+        this.responseGraceMillis = responseGraceMillis;
+    }
+
+    @Override
+    public synchronized boolean isAvailable() {
+        try {
+            ensureStarted();
+        } catch (IOException e) {
+            System.err.println("⚠️  " + name + " recognizer unavailable: " + e.getMessage());
+            return false;
+        }
+        // READY only says the process is up; a round trip shows it also answers requests
+        if (!ping(STARTUP_TIMEOUT_MILLIS)) {
+            System.err.println("⚠️  " + name + " recognizer unavailable: no answer to PING");
+            stop();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String recognize(long timeoutMillis) throws IOException {
+        return recognize(timeoutMillis, null);
+    }
+
+    @Override
+    public synchronized String recognize(long timeoutMillis, Consumer<String> partials) throws IOException {
+        return recognize("RECOGNIZE", String.valueOf(timeoutMillis), timeoutMillis, partials);
+    }
+
+    /** Hands the utterance to the worker as a temporary WAV file, which it reads to the end. */
+    @Override
+    public synchronized String recognize(byte[] pcm, AudioFormat format, Consumer<String> partials) throws IOException {
+        Path wav = Files.createTempFile("utterance-", ".wav");
+        try {
+            WavFiles.write(wav, format, ByteBuffer.wrap(pcm));
+            return recognize("RECOGNIZE_WAV", wav.toAbsolutePath().toString(),
+                (long) WavFiles.durationMillis(format, pcm.length), partials);
+        } finally {
+            Files.deleteIfExists(wav);
+        }
+    }
+
+    private String recognize(String verb, String argument, long timeoutMillis, Consumer<String> partials)
+            throws IOException {
+        // One retry: a worker that crashed since the last call is restarted once
+        for (int attempt = 0; ; attempt++) {
+            ensureStarted();
+            try {
+                Frame response = send(verb, argument, timeoutMillis + responseGraceMillis, partials);
+                switch (response.kind) {
+                    case "OK":
+                        return response.text.isEmpty() ? null : response.text;
+                    case "NOMATCH":
+                        return null;
+                    default:
+                        throw new IOException("Recognizer error: " + response.text);
+                }
+            } catch (TimeoutException e) {
+                System.err.println("⏱️  " + name + " recognizer did not answer, restarting it");
+                stop();
+                return null;
+            } catch (IOException e) {
+                stop();
+                if (attempt > 0 || closed) {
+                    throw e;
+                }
+                System.err.println("🔄 " + name + " recognizer stopped (" + e.getMessage() + "), restarting it");
+            }
+        }
+    }
+
+    /** Round trip used by the startup probe to check the worker is responsive. */
+    private boolean ping(long timeoutMillis) {
+        try {
+            return "PONG".equals(send("PING", "", timeoutMillis, null).kind);
+        } catch (IOException | TimeoutException e) {
+            return false;
+        }
+    }
+
+    /** How many times a dead or unresponsive worker has been replaced. */
+    synchronized int restarts() {
+        return restarts;
+    }
+
+    /**
+     * Stops the worker without taking the lock, so a recognize in progress
+     * fails at once with "worker exited" instead of holding up shutdown.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        Worker current = worker;
+        if (current != null && current.process.isAlive()) {
+            try {
+                current.requests.close();
+                if (!current.process.waitFor(1, TimeUnit.SECONDS)) {
+                    current.process.destroyForcibly();
+                }
+            } catch (Exception e) {
+                current.process.destroyForcibly();
+            }
+        }
+    }
+
+    private Frame send(String verb, String argument, long timeoutMillis, Consumer<String> partials)
+            throws IOException, TimeoutException {
+        long id = nextId.getAndIncrement();
+        Worker target = worker;
+        CompletableFuture<Frame> response = new CompletableFuture<>();
+        target.pending.put(id, response);
+        if (partials != null) {
+            target.partials.put(id, partials);
+        }
+        try {
+            target.requests.write(id + "\t" + verb + "\t" + argument);
+            target.requests.newLine();
+            target.requests.flush();
+            return response.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for recognizer");
+        } finally {
+            target.pending.remove(id);
+            target.partials.remove(id);
+        }
+    }
+
+    private void ensureStarted() throws IOException {
+        if (closed) {
+            throw new IOException(name + " recognizer is closed");
+        }
+        if (worker != null && worker.process.isAlive()) {
+            return;
+        }
+        if (worker != null) {
+            restarts++;
+        }
+
+        long started = System.nanoTime();
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectError(ProcessBuilder.Redirect.DISCARD);
+        Worker starting = new Worker(builder.start());
+        worker = starting;
+        if (closed) {
+            // close() ran while the process was starting and could not see it
+            stop();
+            throw new IOException(name + " recognizer is closed");
+        }
+
+        Thread reader = new Thread(() -> readResponses(starting), "recognizer-" + name + "-reader");
+        reader.setDaemon(true);
+        reader.start();
+
+        try {
+            Frame hello = starting.ready.get(STARTUP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            System.out.printf("✅ %s recognizer ready (%s) in %d ms%n",
+                name, hello.text, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            stop();
+            throw new IOException("worker did not start: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+        }
+    }
+
+    private void readResponses(Worker worker) {
+        try (BufferedReader responses = new BufferedReader(
+                new InputStreamReader(worker.process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = responses.readLine()) != null) {
+                Frame response = parse(line);
+                if (response == null) {
+                    continue;
+                }
+                if (response.id == 0 && "READY".equals(response.kind)) {
+                    worker.ready.complete(response);
+                    continue;
+                }
+                if ("PARTIAL".equals(response.kind)) {
+                    // Runs on this reader thread, so listeners hand off anything slow
+                    Consumer<String> listener = worker.partials.get(response.id);
+                    if (listener != null && !response.text.isEmpty()) {
+                        listener.accept(response.text);
+                    }
+                    continue;
+                }
+                CompletableFuture<Frame> waiter = worker.pending.get(response.id);
+                if (waiter != null) {
+                    waiter.complete(response);
+                }
+            }
+        } catch (IOException e) {
+            // Worker went away; handled below
+        }
+        IOException exited = new IOException("worker exited");
+        worker.ready.completeExceptionally(exited);
+        worker.pending.values().forEach(waiter -> waiter.completeExceptionally(exited));
+    }
+
+    static Frame parse(String line) {
+        String[] parts = line.split("\t", 3);
+        if (parts.length < 2) {
+            return null;
+        }
+        try {
+            return new Frame(Long.parseLong(parts[0].trim()), parts[1], parts.length > 2 ? parts[2].trim() : "");
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void stop() {
+        Worker current = worker;
+        if (current != null) {
+            current.process.destroyForcibly();
+            try {
+                // Wait for the exit so ensureStarted() sees a dead worker
+                current.process.waitFor(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+@echo off
+echo 📊 Running Voice Assistant benchmarks...
+
+rem Set classpath with all required JAR files
+set CLASSPATH=lib\jsapi.jar;lib\freetts.jar;lib\freetts-jsapi10.jar;lib\cmu_us_kal.jar;lib\en_us.jar;lib\cmudict04.jar;lib\cmulex.jar;lib\cmutimelex.jar;lib\cmu_time_awb.jar;lib\mbrola.jar;.
+
+rem Compile Java files
+javac -encoding UTF-8 -cp "%CLASSPATH%" *.java
+if %ERRORLEVEL% NEQ 0 (
+    echo ❌ Compilation failed!
+    pause
+    exit /b 1
+)
+
+rem Results go to bench-results.json; a previous run is kept as the baseline
+if exist bench-results.json (
+    copy /y bench-results.json bench-baseline.json >nul
+    java -cp "%CLASSPATH%" AssistantBenchmark %1 --json bench-results.json --baseline bench-baseline.json
+) else (
+    java -cp "%CLASSPATH%" AssistantBenchmark %1 --json bench-results.json
+)
+
+pause
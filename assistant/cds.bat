@@ -0,0 +1,30 @@
+@echo off
+echo 📦 Building the AppCDS startup archive...
+
+rem Same jars as run.bat; CDS only archives classes from jars, so the compiled classes go into assistant.jar
+set JARS=lib\jsapi.jar;lib\freetts.jar;lib\freetts-jsapi10.jar;lib\cmu_us_kal.jar;lib\en_us.jar;lib\cmudict04.jar;lib\cmulex.jar;lib\cmutimelex.jar;lib\cmu_time_awb.jar;lib\mbrola.jar
+
+javac -encoding UTF-8 -cp "%JARS%" *.java
+if %ERRORLEVEL% NEQ 0 (
+    echo ❌ Compilation failed!
+    pause
+    exit /b 1
+)
+if exist assistant.jsa del assistant.jsa
+rem commands.properties goes in too, as the table used when the working directory has none
+jar cf assistant.jar *.class commands.properties
+if not exist cmulex.map java -cp "%JARS%;assistant.jar" Main --compile-lexicon
+
+rem Training run: loads the voice, speaks the greeting into a null sink and runs sample commands
+java -XX:ArchiveClassesAtExit=assistant.jsa -cp "%JARS%;assistant.jar" Main --warmup
+if not exist assistant.jsa (
+    echo ❌ No archive was written; AppCDS needs Java 13 or later
+    pause
+    exit /b 1
+)
+echo ✅ assistant.jsa written; run.bat now starts from it
+
+rem Time to first prompt without CDS, with the JDK's archive and with assistant.jsa
+java -cp "%JARS%;assistant.jar" Main --startup-compare
+
+pause
@@ -8,6 +8,17 @@ rem Compile Java files
 javac -cp "%CLASSPATH%" *.java
 
 if %ERRORLEVEL% EQU 0 (
+    rem The AppCDS archive and its jar hold the old classes; run cds.bat again to rebuild them
+    if exist assistant.jsa del assistant.jsa
+    rem Sorted lexicon that voices map instead of parsing cmulex.jar; delete it to rebuild
+    if not exist cmulex.map java -cp "%CLASSPATH%" Main --compile-lexicon
+    rem Checks that need no microphone or voice, e.g. which command each trigger phrase runs
+    java -cp "%CLASSPATH%" Main --self-test
+    if errorlevel 1 (
+        echo ❌ Self-test failed!
+        pause
+        exit /b 1
+    )
     echo ✅ Compilation successful!
     echo 🚀 Run with: java -cp "%CLASSPATH%" Main
 ) else (
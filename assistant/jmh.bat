@@ -0,0 +1,16 @@
+@echo off
+echo 📊 Running Voice Assistant JMH benchmarks...
+
+rem Builds jmh\target\benchmarks.jar from the sources here and jmh\src; needs Maven
+call mvn -B -q -f jmh\pom.xml package
+if %ERRORLEVEL% NEQ 0 (
+    echo ❌ Build failed!
+    pause
+    exit /b 1
+)
+
+rem The FreeTTS jars are not in benchmarks.jar; extra arguments go to JMH, e.g. -p name=dispatch.match
+rem Results go to jmh-results.json as well, for comparing runs
+java -cp "jmh\target\benchmarks.jar;lib\*" org.openjdk.jmh.Main -rf json -rff jmh-results.json %*
+
+pause
@@ -0,0 +1,31 @@
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.IntFunction;
+
+/**
+ * Bridge to AssistantBenchmark, which is in the default package.
+ *
+ * JMH will not generate code for a class in the default package, and a
+ * named package cannot refer to one, so operations are looked up
+ * reflectively once per trial and called through IntFunction.
+ */
+final class Assistant {
+    private Assistant() {
+    }
+
+    /** AssistantBenchmark.benchmark(name): the same operation and inputs its own harness times. */
+    static IntFunction<Object> benchmark(String name) throws ReflectiveOperationException {
+        Method lookup = Class.forName("AssistantBenchmark").getDeclaredMethod("benchmark", String.class);
+        lookup.setAccessible(true);
+        try {
+            @SuppressWarnings("unchecked")
+            IntFunction<Object> found = (IntFunction<Object>) lookup.invoke(null, name);
+            return found;
+        } catch (InvocationTargetException e) {
+            // e.g. no FreeTTS voice for a tts.* benchmark; JMH reports it against the parameter
+            throw new IllegalStateException(name + ": " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
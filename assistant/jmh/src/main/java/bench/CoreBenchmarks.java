@@ -0,0 +1,48 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AssistantBenchmark's voice-free steady-state benchmarks under JMH, for
+ * forked, warmed-up runs with error bars. The operations and inputs are
+ * AssistantBenchmark.coreBenchmarks(), so both harnesses measure the same
+ * thing; JMH only supplies the timing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CoreBenchmarks {
+    @Param({"math.legacy-split", "math.parse-uncached", "math.parse-cached",
+            "dispatch.match", "dispatch.process-command", "dispatch.fuzzy-misspelled"})
+    public String name;
+
+    private IntFunction<Object> op;
+    private int i;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        op = Assistant.benchmark(name);
+    }
+
+    // Returned so JMH's blackhole keeps the result alive
+    @Benchmark
+    public Object run() {
+        return op.apply(i++);
+    }
+}
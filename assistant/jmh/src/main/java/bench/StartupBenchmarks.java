@@ -0,0 +1,47 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AssistantBenchmark.coldBenchmarks() under JMH. Each fork is a fresh JVM
+ * that times one invocation with no warmup, so the result is the cost the
+ * assistant pays at startup, class loading and an unwarmed JIT included.
+ * Setup (compiling cmulex.map, looking up the voice) is not timed.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+public class StartupBenchmarks {
+    @Param({"startup.command-index", "startup.lexicon-freetts", "startup.lexicon-mapped",
+            "startup.voice-allocation", "startup.voice-allocation-mapped",
+            "tts.synth-cold-short", "tts.synth-cold-long"})
+    public String name;
+
+    private IntFunction<Object> op;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        op = Assistant.benchmark(name);
+    }
+
+    @Benchmark
+    public Object run() {
+        return op.apply(0);
+    }
+}
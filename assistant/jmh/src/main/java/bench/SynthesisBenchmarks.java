@@ -0,0 +1,46 @@
+package bench;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * AssistantBenchmark.voiceBenchmarks() under JMH: lexicon lookups and
+ * synthesis into memory on an allocated voice. The tts.* parameters need
+ * the kevin16 voice on the classpath and fail in setup without it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class SynthesisBenchmarks {
+    @Param({"lexicon.lookup-freetts", "lexicon.lookup-mapped", "lexicon.lookup-cached",
+            "tts.synth-warm-short", "tts.synth-warm-long", "tts.synth-dynamic", "tts.synth-dynamic-cached"})
+    public String name;
+
+    private IntFunction<Object> op;
+    private int i;
+
+    @Setup
+    public void setUp() throws ReflectiveOperationException {
+        op = Assistant.benchmark(name);
+    }
+
+    @Benchmark
+    public Object run() {
+        return op.apply(i++);
+    }
+}
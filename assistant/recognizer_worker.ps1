@@ -0,0 +1,84 @@
+# Long-lived speech recognition worker for WorkerRecognizerBackend.
+# The engine and dictation grammar are created once; each request is one
+# tab-separated line on stdin and gets one line back on stdout:
+#   request:  id <TAB> verb <TAB> argument
+#   response: id <TAB> status <TAB> text
+# RECOGNIZE listens on the default microphone; RECOGNIZE_WAV reads a
+# recorded utterance from the WAV file named by its argument. While either
+# is running, interim hypotheses are sent as PARTIAL responses with the
+# same id.
+
+Add-Type -AssemblyName System.Speech
+
+$recognizer = New-Object System.Speech.Recognition.SpeechRecognitionEngine
+$recognizer.SetInputToDefaultAudioDevice()
+
+$grammar = New-Object System.Speech.Recognition.DictationGrammar
+$recognizer.LoadGrammar($grammar)
+
+# Id of the RECOGNIZE in progress, so hypotheses can be tagged with it
+$script:recognizing = $null
+$recognizer.add_SpeechHypothesized({
+    param($sender, $e)
+    if ($script:recognizing) {
+        $text = $e.Result.Text -replace "[`t`r`n]", " "
+        [Console]::Out.WriteLine("$($script:recognizing)`tPARTIAL`t$text")
+        [Console]::Out.Flush()
+    }
+})
+
+# Runs one recognition on the current input and writes its answer
+function Write-Recognition($id) {
+    $script:recognizing = $id
+    try {
+        $result = $recognizer.Recognize()
+    } finally {
+        $script:recognizing = $null
+    }
+    if ($result) {
+        $text = $result.Text -replace "[`t`r`n]", " "
+        [Console]::Out.WriteLine("$id`tOK`t$text")
+    } else {
+        [Console]::Out.WriteLine("$id`tNOMATCH`t")
+    }
+}
+
+[Console]::Out.WriteLine("0`tREADY`tSystem.Speech")
+[Console]::Out.Flush()
+
+while (($line = [Console]::In.ReadLine()) -ne $null) {
+    $parts = $line.Split("`t", 3)
+    if ($parts.Length -lt 2) { continue }
+    $id = $parts[0]
+    $verb = $parts[1]
+
+    try {
+        switch ($verb) {
+            "PING" {
+                [Console]::Out.WriteLine("$id`tPONG`t")
+            }
+            "RECOGNIZE" {
+                $recognizer.RecognizeTimeout = [TimeSpan]::FromMilliseconds([double]$parts[2])
+                Write-Recognition $id
+            }
+            "RECOGNIZE_WAV" {
+                # The file ends where the endpointer heard the speaker stop, so no timeout is needed
+                $recognizer.SetInputToWaveFile($parts[2])
+                try {
+                    Write-Recognition $id
+                } finally {
+                    $recognizer.SetInputToDefaultAudioDevice()
+                }
+            }
+            default {
+                [Console]::Out.WriteLine("$id`tERROR`tunknown verb $verb")
+            }
+        }
+    } catch {
+        $message = $_.Exception.Message -replace "[`t`r`n]", " "
+        [Console]::Out.WriteLine("$id`tERROR`t$message")
+    }
+    [Console]::Out.Flush()
+}
+
+$recognizer.Dispose()